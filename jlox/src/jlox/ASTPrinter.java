@@ -27,6 +27,11 @@ public class ASTPrinter implements Expr.Visitor<String> {
 		);
 	}
 
+	@Override
+	public String visitConditionalExpr(Expr.Conditional expr) {
+		return this.parenthesize("if", expr.condition, expr.thenBranch, expr.elseBranch);
+	}
+
 	@Override
 	public String visitGetExpr(Expr.Get expr) {
 		return "<not implemented>";
@@ -37,6 +42,19 @@ public class ASTPrinter implements Expr.Visitor<String> {
 		return this.parenthesize("group", expr.expression);
 	}
 
+	@Override
+	public String visitLetExpr(Expr.Let expr) {
+		StringBuilder builder = new StringBuilder();
+
+		builder.append("(let");
+		for (Stmt.Var binding : expr.bindings) {
+			builder.append(" ").append(this.parenthesize(binding.name.lexeme, binding.initializer));
+		}
+		builder.append(" ").append(expr.body.accept(this)).append(")");
+
+		return builder.toString();
+	}
+
 	@Override
 	public String visitLiteralExpr(Expr.Literal expr) {
 		if (expr.value == null) {
@@ -0,0 +1,12 @@
+package jlox;
+
+// where a variable lives, as decided by `Resolver.layout`
+public enum Access {
+	GLOBAL,
+	// a slot in the frame of the function declaring it, no closure captures it
+	FRAME,
+	// captured by a closure, the slot in the frame of the function declaring it holds the `Cell`
+	CELL,
+	// captured from an enclosing function, the slot is an index into the running closure's upvalues
+	UPVALUE
+}
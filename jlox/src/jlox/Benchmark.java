@@ -0,0 +1,116 @@
+package jlox;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+import java.lang.management.ManagementFactory;
+
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+// times scripts on the tree-walking `Interpreter` and the `ClosureInterpreter`, and reports what a run allocates, e.g.
+// `java -cp out jlox.Benchmark src/example/bench/*.lox`
+public class Benchmark {
+	// the first runs only warm the JVM up, the best of the rest is reported
+	private static final int WARMUP = 3;
+	private static final int RUNS = 5;
+
+	private static final Map<String, BiConsumer<List<Stmt>, Integer>> MODES = new LinkedHashMap<>();
+
+	// counts the bytes allocated by the running thread, which is the only one a script runs on
+	private static final com.sun.management.ThreadMXBean THREADS =
+			(com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+
+	static {
+		Benchmark.MODES.put("interpreter", (statements, frameSize) -> new Interpreter().interpret(statements, frameSize));
+		Benchmark.MODES.put("closures", (statements, frameSize) -> new ClosureInterpreter().interpret(statements));
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0) {
+			System.err.println("Usage: benchmark <script>...");
+			System.exit(64);
+		}
+
+		// compare the tree-walkers themselves, not the compiled code they'd tier up to
+		Lox.jitThreshold = -1;
+
+		PrintStream out = System.out;
+
+		for (String path : args) {
+			String source = new String(Files.readAllBytes(Paths.get(path)), Charset.defaultCharset());
+			StringBuilder line = new StringBuilder(String.format("%-24s", Paths.get(path).getFileName()));
+			long baseline = 0;
+
+			for (Map.Entry<String, BiConsumer<List<Stmt>, Integer>> mode : Benchmark.MODES.entrySet()) {
+				System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+				Measurement measurement = Benchmark.measure(source, mode.getValue());
+				System.setOut(out);
+
+				long best = measurement.nanos;
+				String allocated = Benchmark.formatBytes(measurement.bytes);
+
+				if (baseline == 0) {
+					baseline = best;
+					line.append(String.format("  %s %6dms %9s", mode.getKey(), best / 1_000_000, allocated));
+				} else {
+					double speedup = (double)baseline / best;
+					line.append(String.format("  %s %6dms %9s (%.2fx)", mode.getKey(), best / 1_000_000, allocated, speedup));
+				}
+			}
+
+			out.println(line);
+		}
+	}
+
+	private static Measurement measure(String source, BiConsumer<List<Stmt>, Integer> mode) {
+		Measurement measurement = new Measurement();
+		measurement.nanos = Long.MAX_VALUE;
+
+		for (int run = 0; run < Benchmark.WARMUP + Benchmark.RUNS; run += 1) {
+			// parsed again every time, running a tree rewrites and caches things on it
+			List<Stmt> statements = new Parser(new Scanner(source).scanTokens()).parse();
+			statements = new ConstantFolder().fold(statements);
+			Resolver resolver = new Resolver();
+			resolver.resolve(statements);
+
+			if (Lox.hadError) {
+				throw new IllegalArgumentException("Script has errors.");
+			}
+
+			long allocated = Benchmark.THREADS.getCurrentThreadAllocatedBytes();
+			long start = System.nanoTime();
+			mode.accept(statements, resolver.frameSize);
+			long elapsed = System.nanoTime() - start;
+			allocated = Benchmark.THREADS.getCurrentThreadAllocatedBytes() - allocated;
+
+			if (run >= Benchmark.WARMUP && elapsed < measurement.nanos) {
+				measurement.nanos = elapsed;
+				measurement.bytes = allocated;
+			}
+		}
+
+		return measurement;
+	}
+
+	private static String formatBytes(long bytes) {
+		if (bytes < 1024 * 1024) {
+			return String.format("%.1fKB", bytes / 1024.0);
+		}
+
+		return String.format("%.1fMB", bytes / (1024.0 * 1024.0));
+	}
+
+	// the fastest run and what it allocated
+	private static final class Measurement {
+		long nanos;
+		long bytes;
+	}
+}
@@ -0,0 +1,301 @@
+package jlox;
+
+// how an `Expr.Binary` is evaluated once its operands are. every site starts out uninitialized and rewrites its `node`
+// to a version specialized on the operand types it first sees, and to `Generic` as soon as those types change
+abstract class BinaryNode {
+	public static final BinaryNode UNINITIALIZED = new Uninitialized();
+
+	abstract Object execute(Expr.Binary site, Object left, Object right);
+
+	// both operands evaluated to unboxed numbers, a result that's a number is returned through `interpreter.number`
+	Object executeNumbers(Interpreter interpreter, Expr.Binary site, double left, double right) {
+		return interpreter.unbox(this.execute(site, left, right));
+	}
+
+	// the operands don't fit this specialization, the site stays generic from now on
+	protected Object generalize(Expr.Binary site, Object left, Object right) {
+		site.node = Generic.INSTANCE;
+		return Generic.INSTANCE.execute(site, left, right);
+	}
+
+	private static final class Uninitialized extends BinaryNode {
+		@Override
+		Object execute(Expr.Binary site, Object left, Object right) {
+			site.node = Uninitialized.specialize(site.operator.type, left, right);
+			return site.node.execute(site, left, right);
+		}
+
+		@Override
+		Object executeNumbers(Interpreter interpreter, Expr.Binary site, double left, double right) {
+			site.node = Uninitialized.specialize(site.operator.type, left, right);
+			return site.node.executeNumbers(interpreter, site, left, right);
+		}
+
+		private static BinaryNode specialize(TokenType operator, Object left, Object right) {
+			if (operator == TokenType.EQUAL_EQUAL) {
+				return Equal.INSTANCE;
+			} else if (operator == TokenType.BANG_EQUAL) {
+				return NotEqual.INSTANCE;
+			}
+
+			if (left instanceof Double && right instanceof Double) {
+				switch (operator) {
+					case PLUS: return NumberAdd.INSTANCE;
+					case MINUS: return NumberSubtract.INSTANCE;
+					case STAR: return NumberMultiply.INSTANCE;
+					case SLASH: return NumberDivide.INSTANCE;
+					case GREATER: return NumberGreater.INSTANCE;
+					case GREATER_EQUAL: return NumberGreaterEqual.INSTANCE;
+					case LESS: return NumberLess.INSTANCE;
+					case LESS_EQUAL: return NumberLessEqual.INSTANCE;
+				}
+			}
+
+			if (operator == TokenType.PLUS && left instanceof String && right instanceof String) {
+				return StringAdd.INSTANCE;
+			}
+
+			return Generic.INSTANCE;
+		}
+	}
+
+	private static final class NumberAdd extends BinaryNode {
+		public static final BinaryNode INSTANCE = new NumberAdd();
+
+		@Override
+		Object execute(Expr.Binary site, Object left, Object right) {
+			if (left instanceof Double && right instanceof Double) {
+				return (double)left + (double)right;
+			}
+
+			return this.generalize(site, left, right);
+		}
+
+		@Override
+		Object executeNumbers(Interpreter interpreter, Expr.Binary site, double left, double right) {
+			return interpreter.number(left + right);
+		}
+	}
+
+	private static final class NumberSubtract extends BinaryNode {
+		public static final BinaryNode INSTANCE = new NumberSubtract();
+
+		@Override
+		Object execute(Expr.Binary site, Object left, Object right) {
+			if (left instanceof Double && right instanceof Double) {
+				return (double)left - (double)right;
+			}
+
+			return this.generalize(site, left, right);
+		}
+
+		@Override
+		Object executeNumbers(Interpreter interpreter, Expr.Binary site, double left, double right) {
+			return interpreter.number(left - right);
+		}
+	}
+
+	private static final class NumberMultiply extends BinaryNode {
+		public static final BinaryNode INSTANCE = new NumberMultiply();
+
+		@Override
+		Object execute(Expr.Binary site, Object left, Object right) {
+			if (left instanceof Double && right instanceof Double) {
+				return (double)left * (double)right;
+			}
+
+			return this.generalize(site, left, right);
+		}
+
+		@Override
+		Object executeNumbers(Interpreter interpreter, Expr.Binary site, double left, double right) {
+			return interpreter.number(left * right);
+		}
+	}
+
+	private static final class NumberDivide extends BinaryNode {
+		public static final BinaryNode INSTANCE = new NumberDivide();
+
+		@Override
+		Object execute(Expr.Binary site, Object left, Object right) {
+			if (left instanceof Double && right instanceof Double) {
+				return (double)left / (double)right;
+			}
+
+			return this.generalize(site, left, right);
+		}
+
+		@Override
+		Object executeNumbers(Interpreter interpreter, Expr.Binary site, double left, double right) {
+			return interpreter.number(left / right);
+		}
+	}
+
+	private static final class NumberGreater extends BinaryNode {
+		public static final BinaryNode INSTANCE = new NumberGreater();
+
+		@Override
+		Object execute(Expr.Binary site, Object left, Object right) {
+			if (left instanceof Double && right instanceof Double) {
+				return (double)left > (double)right;
+			}
+
+			return this.generalize(site, left, right);
+		}
+
+		@Override
+		Object executeNumbers(Interpreter interpreter, Expr.Binary site, double left, double right) {
+			return left > right;
+		}
+	}
+
+	private static final class NumberGreaterEqual extends BinaryNode {
+		public static final BinaryNode INSTANCE = new NumberGreaterEqual();
+
+		@Override
+		Object execute(Expr.Binary site, Object left, Object right) {
+			if (left instanceof Double && right instanceof Double) {
+				return (double)left >= (double)right;
+			}
+
+			return this.generalize(site, left, right);
+		}
+
+		@Override
+		Object executeNumbers(Interpreter interpreter, Expr.Binary site, double left, double right) {
+			return left >= right;
+		}
+	}
+
+	private static final class NumberLess extends BinaryNode {
+		public static final BinaryNode INSTANCE = new NumberLess();
+
+		@Override
+		Object execute(Expr.Binary site, Object left, Object right) {
+			if (left instanceof Double && right instanceof Double) {
+				return (double)left < (double)right;
+			}
+
+			return this.generalize(site, left, right);
+		}
+
+		@Override
+		Object executeNumbers(Interpreter interpreter, Expr.Binary site, double left, double right) {
+			return left < right;
+		}
+	}
+
+	private static final class NumberLessEqual extends BinaryNode {
+		public static final BinaryNode INSTANCE = new NumberLessEqual();
+
+		@Override
+		Object execute(Expr.Binary site, Object left, Object right) {
+			if (left instanceof Double && right instanceof Double) {
+				return (double)left <= (double)right;
+			}
+
+			return this.generalize(site, left, right);
+		}
+
+		@Override
+		Object executeNumbers(Interpreter interpreter, Expr.Binary site, double left, double right) {
+			return left <= right;
+		}
+	}
+
+	private static final class StringAdd extends BinaryNode {
+		public static final BinaryNode INSTANCE = new StringAdd();
+
+		@Override
+		Object execute(Expr.Binary site, Object left, Object right) {
+			if (left instanceof String && right instanceof String) {
+				return (String)left + right;
+			}
+
+			return this.generalize(site, left, right);
+		}
+	}
+
+	// equality works on any operands, there's nothing to specialize on
+	private static final class Equal extends BinaryNode {
+		public static final BinaryNode INSTANCE = new Equal();
+
+		@Override
+		Object execute(Expr.Binary site, Object left, Object right) {
+			return Interpreter.isEqual(left, right);
+		}
+
+		// like `Double.equals`, NaN is equal to itself and -0 isn't equal to 0
+		@Override
+		Object executeNumbers(Interpreter interpreter, Expr.Binary site, double left, double right) {
+			return Double.compare(left, right) == 0;
+		}
+	}
+
+	private static final class NotEqual extends BinaryNode {
+		public static final BinaryNode INSTANCE = new NotEqual();
+
+		@Override
+		Object execute(Expr.Binary site, Object left, Object right) {
+			return !Interpreter.isEqual(left, right);
+		}
+
+		@Override
+		Object executeNumbers(Interpreter interpreter, Expr.Binary site, double left, double right) {
+			return Double.compare(left, right) != 0;
+		}
+	}
+
+	private static final class Generic extends BinaryNode {
+		public static final BinaryNode INSTANCE = new Generic();
+
+		@Override
+		Object execute(Expr.Binary site, Object left, Object right) {
+			switch (site.operator.type) {
+				case MINUS:
+					Generic.checkNumberOperands(site.operator, left, right);
+					return (double)left - (double)right;
+				case SLASH:
+					Generic.checkNumberOperands(site.operator, left, right);
+					return (double)left / (double)right;
+				case STAR:
+					Generic.checkNumberOperands(site.operator, left, right);
+					return (double)left * (double)right;
+				case PLUS:
+					if (left instanceof Double && right instanceof Double) {
+						return (double)left + (double)right;
+					} else if (left instanceof String && right instanceof String) {
+						return left + (String)right;
+					} else {
+						throw new RuntimeError(site.operator, "Operands must be two numbers, or two strings");
+					}
+				case GREATER:
+					Generic.checkNumberOperands(site.operator, left, right);
+					return (double)left > (double)right;
+				case GREATER_EQUAL:
+					Generic.checkNumberOperands(site.operator, left, right);
+					return (double)left >= (double)right;
+				case LESS:
+					Generic.checkNumberOperands(site.operator, left, right);
+					return (double)left < (double)right;
+				case LESS_EQUAL:
+					Generic.checkNumberOperands(site.operator, left, right);
+					return (double)left <= (double)right;
+				case EQUAL_EQUAL:
+					return Interpreter.isEqual(left, right);
+				case BANG_EQUAL:
+					return !Interpreter.isEqual(left, right);
+			}
+
+			return null;
+		}
+
+		private static void checkNumberOperands(Token operator, Object left, Object right) {
+			if (left instanceof Double && right instanceof Double) {
+				return;
+			} else {
+				throw new RuntimeError(operator, "Operands must be a number.");
+			}
+		}
+	}
+}
@@ -0,0 +1,25 @@
+package jlox;
+
+// a local that closures capture, its frame slot holds the cell and every closure over it shares the same one, see
+// `Resolver.resolveUpvalue`. a number can be kept unboxed, `value` then holds `Interpreter.NUMBER`
+public class Cell {
+	Object value;
+	double number;
+
+	public Cell(Object value) {
+		this.value = value;
+	}
+
+	// the value as everything but the `Interpreter` sees it, an unboxed number is boxed here
+	public Object get() {
+		if (this.value == Interpreter.NUMBER) {
+			return this.number;
+		}
+
+		return this.value;
+	}
+
+	public void set(Object value) {
+		this.value = value;
+	}
+}
@@ -0,0 +1,495 @@
+package jlox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// just enough of the class file format for the classes the `JitCompiler` makes, they're version 49 so the
+// verifier infers stack map frames itself and we never have to compute them
+class ClassFile {
+	private static final int VERSION = 49;
+
+	public static final int ACC_PUBLIC = 0x0001;
+	public static final int ACC_PRIVATE = 0x0002;
+	public static final int ACC_FINAL = 0x0010;
+	public static final int ACC_SUPER = 0x0020;
+
+	private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+	private final DataOutputStream poolOut = new DataOutputStream(this.pool);
+	private final Map<String, Integer> poolIndices = new HashMap<>();
+	private int poolCount = 1;
+
+	private final ByteArrayOutputStream fields = new ByteArrayOutputStream();
+	private final DataOutputStream fieldsOut = new DataOutputStream(this.fields);
+	private int fieldCount = 0;
+	private final List<byte[]> methods = new ArrayList<>();
+
+	// too big for a method, or for the u1 local and u2 constant indices we emit
+	public static class TooLarge extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		public TooLarge(String message) {
+			super(message, null, false, false);
+		}
+	}
+
+	private interface PoolWriter {
+		void write(DataOutputStream out) throws IOException;
+	}
+
+	private int constant(String key, int slots, PoolWriter writer) {
+		Integer index = this.poolIndices.get(key);
+		if (index != null) return index;
+
+		try {
+			writer.write(this.poolOut);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		index = this.poolCount;
+		this.poolCount += slots;
+
+		if (this.poolCount > 0xffff) {
+			throw new TooLarge("Too many constants.");
+		}
+
+		this.poolIndices.put(key, index);
+		return index;
+	}
+
+	public int utf8(String value) {
+		return this.constant("U" + value, 1, out -> {
+			out.writeByte(1);
+			out.writeUTF(value);
+		});
+	}
+
+	public int classRef(String internalName) {
+		int name = this.utf8(internalName);
+		return this.constant("C" + internalName, 1, out -> {
+			out.writeByte(7);
+			out.writeShort(name);
+		});
+	}
+
+	private int nameAndType(String name, String descriptor) {
+		int nameIndex = this.utf8(name);
+		int descriptorIndex = this.utf8(descriptor);
+		return this.constant("N" + name + ":" + descriptor, 1, out -> {
+			out.writeByte(12);
+			out.writeShort(nameIndex);
+			out.writeShort(descriptorIndex);
+		});
+	}
+
+	private int memberRef(int tag, String owner, String name, String descriptor) {
+		int ownerIndex = this.classRef(owner);
+		int nameAndTypeIndex = this.nameAndType(name, descriptor);
+		return this.constant(tag + owner + "." + name + ":" + descriptor, 1, out -> {
+			out.writeByte(tag);
+			out.writeShort(ownerIndex);
+			out.writeShort(nameAndTypeIndex);
+		});
+	}
+
+	public int fieldRef(String owner, String name, String descriptor) {
+		return this.memberRef(9, owner, name, descriptor);
+	}
+
+	public int methodRef(String owner, String name, String descriptor) {
+		return this.memberRef(10, owner, name, descriptor);
+	}
+
+	public int interfaceMethodRef(String owner, String name, String descriptor) {
+		return this.memberRef(11, owner, name, descriptor);
+	}
+
+	public void field(int access, String name, String descriptor) {
+		try {
+			this.fieldsOut.writeShort(access);
+			this.fieldsOut.writeShort(this.utf8(name));
+			this.fieldsOut.writeShort(this.utf8(descriptor));
+			this.fieldsOut.writeShort(0);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		this.fieldCount += 1;
+	}
+
+	public Code method(int access, String name, String descriptor) {
+		return new Code(this, access, name, descriptor);
+	}
+
+	public byte[] toByteArray(int access, String thisClass, String superClass, String... interfaces) {
+		int thisIndex = this.classRef(thisClass);
+		int superIndex = this.classRef(superClass);
+		int[] interfaceIndices = new int[interfaces.length];
+		for (int i = 0; i < interfaces.length; i += 1) {
+			interfaceIndices[i] = this.classRef(interfaces[i]);
+		}
+		int codeIndex = this.utf8("Code");
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+
+		try {
+			out.writeInt(0xcafebabe);
+			out.writeShort(0);
+			out.writeShort(ClassFile.VERSION);
+			out.writeShort(this.poolCount);
+			this.pool.writeTo(out);
+
+			out.writeShort(access);
+			out.writeShort(thisIndex);
+			out.writeShort(superIndex);
+			out.writeShort(interfaceIndices.length);
+			for (int index : interfaceIndices) {
+				out.writeShort(index);
+			}
+
+			out.writeShort(this.fieldCount);
+			this.fields.writeTo(out);
+
+			out.writeShort(this.methods.size());
+			for (byte[] method : this.methods) {
+				// methods are written without their "Code" attribute name, it's only known to be in the pool now
+				out.write(method, 0, 6);
+				out.writeShort(1);
+				out.writeShort(codeIndex);
+				out.write(method, 6, method.length - 6);
+			}
+
+			out.writeShort(0);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		return bytes.toByteArray();
+	}
+
+	// a forward or backward branch target inside a `Code`
+	public static class Label {
+		private int position = -1;
+		// operand stack depth on entry, -1 until a branch or placement sets it
+		private int stack = -1;
+		private final List<Integer> jumps = new ArrayList<>();
+	}
+
+	public static class Code {
+		public static final int ACONST_NULL = 0x01;
+		public static final int ICONST_0 = 0x03;
+		public static final int BIPUSH = 0x10;
+		public static final int SIPUSH = 0x11;
+		public static final int ALOAD = 0x19;
+		public static final int AALOAD = 0x32;
+		public static final int ASTORE = 0x3a;
+		public static final int AASTORE = 0x53;
+		public static final int POP = 0x57;
+		public static final int DUP = 0x59;
+		public static final int IFEQ = 0x99;
+		public static final int IFNE = 0x9a;
+		public static final int GOTO = 0xa7;
+		public static final int ARETURN = 0xb0;
+		public static final int RETURN = 0xb1;
+		public static final int GETSTATIC = 0xb2;
+		public static final int GETFIELD = 0xb4;
+		public static final int PUTFIELD = 0xb5;
+		public static final int INVOKEVIRTUAL = 0xb6;
+		public static final int INVOKESPECIAL = 0xb7;
+		public static final int INVOKESTATIC = 0xb8;
+		public static final int INVOKEINTERFACE = 0xb9;
+		public static final int ANEWARRAY = 0xbd;
+		public static final int ATHROW = 0xbf;
+		public static final int CHECKCAST = 0xc0;
+
+		private static final int MAX_CODE = 0xffff;
+
+		private final ClassFile classFile;
+		private final int access;
+		private final String name;
+		private final String descriptor;
+
+		private byte[] code = new byte[64];
+		private int length = 0;
+		private int stack = 0;
+		private int maxStack = 0;
+		private int maxLocals;
+
+		private Code(ClassFile classFile, int access, String name, String descriptor) {
+			this.classFile = classFile;
+			this.access = access;
+			this.name = name;
+			this.descriptor = descriptor;
+			// `this` and the arguments, we only ever emit instance methods
+			this.maxLocals = Code.argumentSlots(descriptor) + 1;
+		}
+
+		private void u1(int value) {
+			if (this.length == this.code.length) {
+				if (this.length > Code.MAX_CODE) {
+					throw new TooLarge("Method too large.");
+				}
+
+				this.code = Arrays.copyOf(this.code, this.length * 2);
+			}
+
+			this.code[this.length] = (byte)value;
+			this.length += 1;
+		}
+
+		private void u2(int value) {
+			this.u1(value >> 8);
+			this.u1(value);
+		}
+
+		private void adjust(int effect) {
+			this.stack += effect;
+			this.maxStack = Math.max(this.maxStack, this.stack);
+		}
+
+		public void op(int opcode, int effect) {
+			this.u1(opcode);
+			this.adjust(effect);
+		}
+
+		public void aconstNull() {
+			this.op(Code.ACONST_NULL, 1);
+		}
+
+		public void pop() {
+			this.op(Code.POP, -1);
+		}
+
+		public void dup() {
+			this.op(Code.DUP, 1);
+		}
+
+		public void iconst(int value) {
+			if (value >= -1 && value <= 5) {
+				this.op(Code.ICONST_0 + value, 1);
+			} else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+				this.op(Code.BIPUSH, 1);
+				this.u1(value);
+			} else {
+				this.op(Code.SIPUSH, 1);
+				this.u2(value);
+			}
+		}
+
+		private void local(int opcode, int index, int effect) {
+			if (index > 0xff) {
+				throw new TooLarge("Too many local variables.");
+			}
+
+			this.op(opcode, effect);
+			this.u1(index);
+			this.maxLocals = Math.max(this.maxLocals, index + 1);
+		}
+
+		public void aload(int index) {
+			this.local(Code.ALOAD, index, 1);
+		}
+
+		public void astore(int index) {
+			this.local(Code.ASTORE, index, -1);
+		}
+
+		public void aaload() {
+			this.op(Code.AALOAD, -1);
+		}
+
+		public void aastore() {
+			this.op(Code.AASTORE, -3);
+		}
+
+		public void anewarray(String internalName) {
+			this.op(Code.ANEWARRAY, 0);
+			this.u2(this.classFile.classRef(internalName));
+		}
+
+		public void checkcast(String internalName) {
+			this.op(Code.CHECKCAST, 0);
+			this.u2(this.classFile.classRef(internalName));
+		}
+
+		public void getstatic(String owner, String name, String descriptor) {
+			this.op(Code.GETSTATIC, 1);
+			this.u2(this.classFile.fieldRef(owner, name, descriptor));
+		}
+
+		public void getfield(String owner, String name, String descriptor) {
+			this.op(Code.GETFIELD, 0);
+			this.u2(this.classFile.fieldRef(owner, name, descriptor));
+		}
+
+		public void putfield(String owner, String name, String descriptor) {
+			this.op(Code.PUTFIELD, -2);
+			this.u2(this.classFile.fieldRef(owner, name, descriptor));
+		}
+
+		public void invokestatic(String owner, String name, String descriptor) {
+			this.op(Code.INVOKESTATIC, Code.returnSlots(descriptor) - Code.argumentSlots(descriptor));
+			this.u2(this.classFile.methodRef(owner, name, descriptor));
+		}
+
+		public void invokevirtual(String owner, String name, String descriptor) {
+			this.op(Code.INVOKEVIRTUAL, Code.returnSlots(descriptor) - Code.argumentSlots(descriptor) - 1);
+			this.u2(this.classFile.methodRef(owner, name, descriptor));
+		}
+
+		public void invokespecial(String owner, String name, String descriptor) {
+			this.op(Code.INVOKESPECIAL, Code.returnSlots(descriptor) - Code.argumentSlots(descriptor) - 1);
+			this.u2(this.classFile.methodRef(owner, name, descriptor));
+		}
+
+		public void invokeinterface(String owner, String name, String descriptor) {
+			int arguments = Code.argumentSlots(descriptor);
+			this.op(Code.INVOKEINTERFACE, Code.returnSlots(descriptor) - arguments - 1);
+			this.u2(this.classFile.interfaceMethodRef(owner, name, descriptor));
+			this.u1(arguments + 1);
+			this.u1(0);
+		}
+
+		// the value on top of the stack leaves the method, nothing after this is reachable until a label
+		public void areturn() {
+			this.op(Code.ARETURN, -1);
+			this.stack = 0;
+		}
+
+		public void vreturn() {
+			this.op(Code.RETURN, 0);
+			this.stack = 0;
+		}
+
+		public void athrow() {
+			this.op(Code.ATHROW, -1);
+			this.stack = 0;
+		}
+
+		// `ifeq`, `ifne` and `goto`, all with 16 bit offsets from the start of the instruction
+		public void jump(int opcode, Label target) {
+			int start = this.length;
+			this.op(opcode, opcode == Code.GOTO ? 0 : -1);
+			target.stack = this.stack;
+
+			if (target.position >= 0) {
+				this.branchOffset(target.position - start);
+			} else {
+				target.jumps.add(start);
+				this.u2(0);
+			}
+		}
+
+		private void branchOffset(int offset) {
+			if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) {
+				throw new TooLarge("Jump too large.");
+			}
+
+			this.u2(offset);
+		}
+
+		public void place(Label label) {
+			label.position = this.length;
+
+			if (label.stack >= 0) {
+				this.stack = label.stack;
+			} else {
+				label.stack = this.stack;
+			}
+
+			for (int jump : label.jumps) {
+				int offset = label.position - jump;
+
+				if (offset > Short.MAX_VALUE) {
+					throw new TooLarge("Jump too large.");
+				}
+
+				this.code[jump + 1] = (byte)(offset >> 8);
+				this.code[jump + 2] = (byte)offset;
+			}
+		}
+
+		// a local slot nothing else uses yet
+		public int newLocal() {
+			this.maxLocals += 1;
+			return this.maxLocals - 1;
+		}
+
+		public void end() {
+			if (this.length > Code.MAX_CODE) {
+				throw new TooLarge("Method too large.");
+			}
+
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+
+			try {
+				out.writeShort(this.access);
+				out.writeShort(this.classFile.utf8(this.name));
+				out.writeShort(this.classFile.utf8(this.descriptor));
+
+				out.writeInt(12 + this.length);
+				out.writeShort(this.maxStack);
+				out.writeShort(this.maxLocals);
+				out.writeInt(this.length);
+				out.write(this.code, 0, this.length);
+				// no exception table and no attributes
+				out.writeShort(0);
+				out.writeShort(0);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+
+			this.classFile.methods.add(bytes.toByteArray());
+		}
+
+		private static int argumentSlots(String descriptor) {
+			int slots = 0;
+			int i = 1;
+
+			while (descriptor.charAt(i) != ')') {
+				char type = descriptor.charAt(i);
+
+				if (type == 'J' || type == 'D') {
+					slots += 2;
+				} else {
+					slots += 1;
+				}
+
+				// arrays of longs and doubles are still a single reference
+				while (descriptor.charAt(i) == '[') {
+					i += 1;
+				}
+
+				if (descriptor.charAt(i) == 'L') {
+					i = descriptor.indexOf(';', i);
+				}
+
+				i += 1;
+			}
+
+			return slots;
+		}
+
+		private static int returnSlots(String descriptor) {
+			char type = descriptor.charAt(descriptor.indexOf(')') + 1);
+
+			if (type == 'V') {
+				return 0;
+			} else if (type == 'J' || type == 'D') {
+				return 2;
+			} else {
+				return 1;
+			}
+		}
+	}
+}
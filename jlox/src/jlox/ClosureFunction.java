@@ -0,0 +1,143 @@
+package jlox;
+
+// a function whose body was compiled by the `ClosureInterpreter`, it never needs an `Interpreter` to run
+public class ClosureFunction extends LoxFunction {
+	// holds the frames the body runs in
+	private final ClosureInterpreter runtime;
+	private final ClosureInterpreter.Executor[] body;
+
+	public ClosureFunction(
+			ClosureInterpreter runtime,
+			Stmt.Function declaration,
+			Cell[] upvalues,
+			boolean isInitializer,
+			ClosureInterpreter.Executor[] body
+	) {
+		this(runtime, declaration, upvalues, isInitializer, body, null);
+	}
+
+	private ClosureFunction(
+			ClosureInterpreter runtime,
+			Stmt.Function declaration,
+			Cell[] upvalues,
+			boolean isInitializer,
+			ClosureInterpreter.Executor[] body,
+			LoxInstance receiver
+	) {
+		super(declaration, upvalues, isInitializer, receiver);
+		this.runtime = runtime;
+		this.body = body;
+	}
+
+	@Override
+	public ClosureFunction bind(LoxInstance instance) {
+		return new ClosureFunction(this.runtime, this.declaration, this.upvalues, this.isInitializer, this.body, instance);
+	}
+
+	@Override
+	public Object call0(Interpreter interpreter) {
+		int frame = this.runtime.nextFrame();
+		this.pushReceiver();
+		return this.run(frame);
+	}
+
+	@Override
+	public Object call1(Interpreter interpreter, Object first) {
+		int frame = this.runtime.nextFrame();
+		this.pushReceiver();
+		this.runtime.push(first);
+		return this.run(frame);
+	}
+
+	@Override
+	public Object call2(Interpreter interpreter, Object first, Object second) {
+		int frame = this.runtime.nextFrame();
+		this.pushReceiver();
+		this.runtime.push(first);
+		this.runtime.push(second);
+		return this.run(frame);
+	}
+
+	@Override
+	public Object call3(Interpreter interpreter, Object first, Object second, Object third) {
+		int frame = this.runtime.nextFrame();
+		this.pushReceiver();
+		this.runtime.push(first);
+		this.runtime.push(second);
+		this.runtime.push(third);
+		return this.run(frame);
+	}
+
+	@Override
+	Object invoke(Interpreter interpreter, Object[] arguments) {
+		int frame = this.runtime.nextFrame();
+
+		for (Object argument : arguments) {
+			this.runtime.push(argument);
+		}
+
+		return this.run(frame);
+	}
+
+	// the `ClosureInterpreter` keeps its frames on a stack of its own, the instance and arguments are pushed there
+	@Override
+	void initialize0(Interpreter interpreter, LoxInstance instance) {
+		int frame = this.runtime.nextFrame();
+		this.runtime.push(instance);
+		this.run(frame);
+	}
+
+	@Override
+	void initialize1(Interpreter interpreter, LoxInstance instance, Object first) {
+		int frame = this.runtime.nextFrame();
+		this.runtime.push(instance);
+		this.runtime.push(first);
+		this.run(frame);
+	}
+
+	@Override
+	void initialize2(Interpreter interpreter, LoxInstance instance, Object first, Object second) {
+		int frame = this.runtime.nextFrame();
+		this.runtime.push(instance);
+		this.runtime.push(first);
+		this.runtime.push(second);
+		this.run(frame);
+	}
+
+	@Override
+	void initialize3(Interpreter interpreter, LoxInstance instance, Object first, Object second, Object third) {
+		int frame = this.runtime.nextFrame();
+		this.runtime.push(instance);
+		this.runtime.push(first);
+		this.runtime.push(second);
+		this.runtime.push(third);
+		this.run(frame);
+	}
+
+	@Override
+	void initialize(Interpreter interpreter, LoxInstance instance, Object[] arguments) {
+		int frame = this.runtime.nextFrame();
+		this.runtime.push(instance);
+
+		for (Object argument : arguments) {
+			this.runtime.push(argument);
+		}
+
+		this.run(frame);
+	}
+
+	private void pushReceiver() {
+		if (this.declaration.isMethod) {
+			this.runtime.push(this.receiver);
+		}
+	}
+
+	private Object run(int frame) {
+		Object receiver = this.isInitializer ? this.runtime.valueAt(frame) : null;
+		Object value = this.runtime.executeFunction(this.declaration, this.upvalues, this.body, frame);
+
+		if (this.isInitializer) return receiver;
+
+		return value;
+	}
+}
@@ -0,0 +1,648 @@
+package jlox;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// runs programs like the `Interpreter`, but first turns the resolved AST into a tree of lambdas that already hold their
+// children, slots and operator, so running a node is one call instead of `accept` plus a visitor method
+public class ClosureInterpreter implements Expr.Visitor<ClosureInterpreter.Evaluator>, Stmt.Visitor<ClosureInterpreter.Executor> {
+	@FunctionalInterface
+	interface Evaluator {
+		Object evaluate(Cell[] upvalues);
+	}
+
+	@FunctionalInterface
+	interface Executor {
+		Completion execute(Cell[] upvalues);
+	}
+
+	public final Environment globals = new Environment();
+	// locals live in frames like the `Interpreter`'s, while `ClosureFunction`s pass the cells they captured down the
+	// lambdas
+	private Object[] stack = new Object[1024];
+	private int frame = 0;
+	private int top = 0;
+	// what the last `return` returned, a `return` passes `Completion.RETURN` on like in the `Interpreter`
+	private Object returnValue = null;
+
+	public ClosureInterpreter() {
+		this.globals.define("clock", Natives.CLOCK);
+	}
+
+	public void interpret(List<Stmt> statements) {
+		Executor[] program = this.compile(statements);
+		this.frame = 0;
+		this.top = 0;
+
+		try {
+			for (Executor statement : program) {
+				statement.execute(null);
+			}
+		} catch (RuntimeError e) {
+			Lox.runtimeError(e);
+		}
+	}
+
+	Executor[] compile(List<Stmt> statements) {
+		Executor[] executors = new Executor[statements.size()];
+
+		for (int i = 0; i < executors.length; i += 1) {
+			executors[i] = statements.get(i).accept(this);
+		}
+
+		return executors;
+	}
+
+	private Evaluator compile(Expr expr) {
+		return expr.accept(this);
+	}
+
+	private Executor compile(Stmt stmt) {
+		return stmt.accept(this);
+	}
+
+	// where the `Resolver` put the declaration
+	private Executor define(Access access, int slot, Evaluator value) {
+		switch (access) {
+			case FRAME:
+				return upvalues -> {
+					this.defineFrame(slot, value.evaluate(upvalues));
+					return Completion.NORMAL;
+				};
+			case CELL:
+				// the cell is made first, a function or class closures capture can refer to itself
+				return upvalues -> {
+					Cell cell = new Cell(null);
+					this.defineFrame(slot, cell);
+					cell.value = value.evaluate(upvalues);
+					return Completion.NORMAL;
+				};
+			default:
+				return upvalues -> {
+					this.globals.define(slot, value.evaluate(upvalues));
+					return Completion.NORMAL;
+				};
+		}
+	}
+
+	private Evaluator load(Token name, Access access, int slot) {
+		switch (access) {
+			case FRAME:
+				return upvalues -> this.stack[this.frame + slot];
+			case CELL:
+				return upvalues -> ((Cell)this.stack[this.frame + slot]).value;
+			case UPVALUE:
+				return upvalues -> upvalues[slot].value;
+			default:
+				return upvalues -> this.globals.get(name, slot);
+		}
+	}
+
+	// runs the body of a `ClosureFunction` whose receiver and arguments were pushed from `frame` on, and returns what it
+	// returned
+	Object executeFunction(Stmt.Function function, Cell[] upvalues, Executor[] body, int frame) {
+		int previousFrame = this.frame;
+
+		try {
+			for (int slot : function.capturedParams) {
+				this.stack[frame + slot] = new Cell(this.stack[frame + slot]);
+			}
+
+			this.frame = frame;
+
+			for (Executor statement : body) {
+				if (statement.execute(upvalues) == Completion.RETURN) {
+					Object value = this.returnValue;
+					this.returnValue = null;
+					return value;
+				}
+			}
+
+			return null;
+		} finally {
+			this.frame = previousFrame;
+			this.top = frame;
+		}
+	}
+
+	// the upvalues of a closure over `function` created in the running frame, see `Resolver.resolveUpvalue`
+	private Cell[] capture(Stmt.Function function, Cell[] enclosing) {
+		Cell[] upvalues = new Cell[function.upvalues.length];
+
+		for (int i = 0; i < upvalues.length; i += 1) {
+			int index = function.upvalues[i];
+			upvalues[i] = function.upvaluesAreLocal[i] ? (Cell)this.stack[this.frame + index] : enclosing[index];
+		}
+
+		return upvalues;
+	}
+
+	// where the frame of the next call starts, its receiver and arguments are `push`ed
+	int nextFrame() {
+		return this.top;
+	}
+
+	void push(Object value) {
+		if (this.top == this.stack.length) {
+			this.stack = Arrays.copyOf(this.stack, this.stack.length * 2);
+		}
+
+		this.stack[this.top] = value;
+		this.top += 1;
+	}
+
+	Object valueAt(int index) {
+		return this.stack[index];
+	}
+
+	private void defineFrame(int slot, Object value) {
+		int index = this.frame + slot;
+
+		if (index >= this.top) {
+			if (index >= this.stack.length) {
+				this.stack = Arrays.copyOf(this.stack, Math.max(this.stack.length * 2, index + 1));
+			}
+
+			this.top = index + 1;
+		}
+
+		this.stack[index] = value;
+	}
+
+	@Override
+	public Evaluator visitAssignExpr(Expr.Assign expr) {
+		Evaluator value = this.compile(expr.value);
+		Token name = expr.name;
+		int slot = expr.slot;
+
+		switch (expr.access) {
+			case FRAME:
+				return upvalues -> {
+					Object result = value.evaluate(upvalues);
+					this.stack[this.frame + slot] = result;
+					return result;
+				};
+			case CELL:
+				return upvalues -> {
+					Object result = value.evaluate(upvalues);
+					((Cell)this.stack[this.frame + slot]).value = result;
+					return result;
+				};
+			case UPVALUE:
+				return upvalues -> {
+					Object result = value.evaluate(upvalues);
+					upvalues[slot].value = result;
+					return result;
+				};
+			default:
+				return upvalues -> {
+					Object result = value.evaluate(upvalues);
+					this.globals.assign(name, slot, result);
+					return result;
+				};
+		}
+	}
+
+	@Override
+	public Evaluator visitBinaryExpr(Expr.Binary expr) {
+		Evaluator left = this.compile(expr.left);
+		Evaluator right = this.compile(expr.right);
+		Token operator = expr.operator;
+
+		switch (operator.type) {
+			case MINUS:
+				return upvalues -> {
+					Object a = left.evaluate(upvalues);
+					Object b = right.evaluate(upvalues);
+					ClosureInterpreter.checkNumberOperands(operator, a, b);
+					return (double)a - (double)b;
+				};
+			case SLASH:
+				return upvalues -> {
+					Object a = left.evaluate(upvalues);
+					Object b = right.evaluate(upvalues);
+					ClosureInterpreter.checkNumberOperands(operator, a, b);
+					return (double)a / (double)b;
+				};
+			case STAR:
+				return upvalues -> {
+					Object a = left.evaluate(upvalues);
+					Object b = right.evaluate(upvalues);
+					ClosureInterpreter.checkNumberOperands(operator, a, b);
+					return (double)a * (double)b;
+				};
+			case PLUS:
+				return upvalues -> {
+					Object a = left.evaluate(upvalues);
+					Object b = right.evaluate(upvalues);
+
+					if (a instanceof Double && b instanceof Double) {
+						return (double)a + (double)b;
+					} else if (a instanceof String && b instanceof String) {
+						return a + (String)b;
+					} else {
+						throw new RuntimeError(operator, "Operands must be two numbers, or two strings");
+					}
+				};
+			case GREATER:
+				return upvalues -> {
+					Object a = left.evaluate(upvalues);
+					Object b = right.evaluate(upvalues);
+					ClosureInterpreter.checkNumberOperands(operator, a, b);
+					return (double)a > (double)b;
+				};
+			case GREATER_EQUAL:
+				return upvalues -> {
+					Object a = left.evaluate(upvalues);
+					Object b = right.evaluate(upvalues);
+					ClosureInterpreter.checkNumberOperands(operator, a, b);
+					return (double)a >= (double)b;
+				};
+			case LESS:
+				return upvalues -> {
+					Object a = left.evaluate(upvalues);
+					Object b = right.evaluate(upvalues);
+					ClosureInterpreter.checkNumberOperands(operator, a, b);
+					return (double)a < (double)b;
+				};
+			case LESS_EQUAL:
+				return upvalues -> {
+					Object a = left.evaluate(upvalues);
+					Object b = right.evaluate(upvalues);
+					ClosureInterpreter.checkNumberOperands(operator, a, b);
+					return (double)a <= (double)b;
+				};
+			case EQUAL_EQUAL:
+				return upvalues -> Interpreter.isEqual(left.evaluate(upvalues), right.evaluate(upvalues));
+			case BANG_EQUAL:
+				return upvalues -> !Interpreter.isEqual(left.evaluate(upvalues), right.evaluate(upvalues));
+		}
+
+		return upvalues -> null;
+	}
+
+	@Override
+	public Evaluator visitCallExpr(Expr.Call expr) {
+		Evaluator callee = this.compile(expr.callee);
+		Evaluator[] arguments = new Evaluator[expr.arguments.size()];
+		for (int i = 0; i < arguments.length; i += 1) {
+			arguments[i] = this.compile(expr.arguments.get(i));
+		}
+		Token paren = expr.paren;
+
+		// nothing called from here walks the tree, so there's no `Interpreter` to pass
+		switch (arguments.length) {
+			case 0:
+				return upvalues -> {
+					Object function = callee.evaluate(upvalues);
+					return ClosureInterpreter.checkCall(function, 0, paren).call0(null);
+				};
+			case 1:
+				return upvalues -> {
+					Object function = callee.evaluate(upvalues);
+					Object first = arguments[0].evaluate(upvalues);
+					return ClosureInterpreter.checkCall(function, 1, paren).call1(null, first);
+				};
+			case 2:
+				return upvalues -> {
+					Object function = callee.evaluate(upvalues);
+					Object first = arguments[0].evaluate(upvalues);
+					Object second = arguments[1].evaluate(upvalues);
+					return ClosureInterpreter.checkCall(function, 2, paren).call2(null, first, second);
+				};
+			case 3:
+				return upvalues -> {
+					Object function = callee.evaluate(upvalues);
+					Object first = arguments[0].evaluate(upvalues);
+					Object second = arguments[1].evaluate(upvalues);
+					Object third = arguments[2].evaluate(upvalues);
+					return ClosureInterpreter.checkCall(function, 3, paren).call3(null, first, second, third);
+				};
+			default:
+				return upvalues -> {
+					Object function = callee.evaluate(upvalues);
+
+					Object[] values = new Object[arguments.length];
+					for (int i = 0; i < arguments.length; i += 1) {
+						values[i] = arguments[i].evaluate(upvalues);
+					}
+
+					return ClosureInterpreter.checkCall(function, values.length, paren).call(null, values);
+				};
+		}
+	}
+
+	// arguments are evaluated before the callee is checked
+	private static LoxCallable checkCall(Object function, int count, Token paren) {
+		if (!(function instanceof LoxCallable)) {
+			throw new RuntimeError(paren, "Can only call functions and classes.");
+		}
+
+		LoxCallable callable = (LoxCallable)function;
+
+		if (count != callable.arity()) {
+			throw new RuntimeError(paren, "Expected " + callable.arity() + " arguments but got " + count + ".");
+		}
+
+		return callable;
+	}
+
+	@Override
+	public Evaluator visitConditionalExpr(Expr.Conditional expr) {
+		Evaluator condition = this.compile(expr.condition);
+		Evaluator thenBranch = this.compile(expr.thenBranch);
+		Evaluator elseBranch = this.compile(expr.elseBranch);
+
+		return upvalues -> {
+			if (Interpreter.isTruthy(condition.evaluate(upvalues))) {
+				return thenBranch.evaluate(upvalues);
+			}
+
+			return elseBranch.evaluate(upvalues);
+		};
+	}
+
+	@Override
+	public Evaluator visitGetExpr(Expr.Get expr) {
+		Evaluator object = this.compile(expr.object);
+		Token name = expr.name;
+
+		return upvalues -> {
+			Object value = object.evaluate(upvalues);
+
+			if (value instanceof LoxInstance) {
+				return ((LoxInstance)value).get(expr);
+			}
+
+			throw new RuntimeError(name, "Only instances have properties.");
+		};
+	}
+
+	@Override
+	public Evaluator visitGroupingExpr(Expr.Grouping expr) {
+		return this.compile(expr.expression);
+	}
+
+	// unlike the `Interpreter`'s, calls push their arguments only once they're all evaluated, so the bindings can
+	// claim their slots as they're defined
+	@Override
+	public Evaluator visitLetExpr(Expr.Let expr) {
+		Executor[] bindings = new Executor[expr.bindings.size()];
+		for (int i = 0; i < bindings.length; i += 1) {
+			bindings[i] = this.compile(expr.bindings.get(i));
+		}
+		Evaluator body = this.compile(expr.body);
+
+		return upvalues -> {
+			for (Executor binding : bindings) {
+				binding.execute(upvalues);
+			}
+
+			return body.evaluate(upvalues);
+		};
+	}
+
+	@Override
+	public Evaluator visitLiteralExpr(Expr.Literal expr) {
+		Object value = expr.value;
+		return upvalues -> value;
+	}
+
+	@Override
+	public Evaluator visitLogicalExpr(Expr.Logical expr) {
+		Evaluator left = this.compile(expr.left);
+		Evaluator right = this.compile(expr.right);
+
+		if (expr.operator.type == TokenType.OR) {
+			return upvalues -> {
+				Object value = left.evaluate(upvalues);
+				return Interpreter.isTruthy(value) ? value : right.evaluate(upvalues);
+			};
+		} else {
+			return upvalues -> {
+				Object value = left.evaluate(upvalues);
+				return !Interpreter.isTruthy(value) ? value : right.evaluate(upvalues);
+			};
+		}
+	}
+
+	@Override
+	public Evaluator visitSetExpr(Expr.Set expr) {
+		Evaluator object = this.compile(expr.object);
+		Evaluator value = this.compile(expr.value);
+		Token name = expr.name;
+
+		return upvalues -> {
+			Object instance = object.evaluate(upvalues);
+
+			if (!(instance instanceof LoxInstance)) {
+				throw new RuntimeError(name, "Only instances have fields");
+			}
+
+			Object result = value.evaluate(upvalues);
+			((LoxInstance)instance).set(expr, result);
+			return result;
+		};
+	}
+
+	@Override
+	public Evaluator visitSuperExpr(Expr.Super expr) {
+		// methods always capture "super"
+		int slot = expr.slot;
+		Evaluator receiver = this.compile(expr.receiver);
+		Token method = expr.method;
+
+		return upvalues -> {
+			LoxClass superclass = (LoxClass)upvalues[slot].value;
+			LoxInstance object = (LoxInstance)receiver.evaluate(upvalues);
+			LoxFunction function = superclass.findMethod(method.symbol);
+
+			if (function == null) {
+				throw new RuntimeError(method, "Undefined property \"" + method.lexeme + "\".");
+			}
+
+			return function.bind(object);
+		};
+	}
+
+	@Override
+	public Evaluator visitThisExpr(Expr.This expr) {
+		return this.load(expr.keyword, expr.access, expr.slot);
+	}
+
+	@Override
+	public Evaluator visitUnaryExpr(Expr.Unary expr) {
+		Evaluator right = this.compile(expr.right);
+		Token operator = expr.operator;
+
+		if (operator.type == TokenType.BANG) {
+			return upvalues -> !Interpreter.isTruthy(right.evaluate(upvalues));
+		} else {
+			return upvalues -> {
+				Object value = right.evaluate(upvalues);
+
+				if (!(value instanceof Double)) {
+					throw new RuntimeError(operator, "Operand must be a number.");
+				}
+
+				return -(double)value;
+			};
+		}
+	}
+
+	@Override
+	public Evaluator visitVariableExpr(Expr.Variable expr) {
+		return this.load(expr.name, expr.access, expr.slot);
+	}
+
+	@Override
+	public Executor visitBlockStmt(Stmt.Block stmt) {
+		Executor[] statements = this.compile(stmt.statements);
+
+		return upvalues -> {
+			for (Executor statement : statements) {
+				if (statement.execute(upvalues) == Completion.RETURN) {
+					return Completion.RETURN;
+				}
+			}
+
+			return Completion.NORMAL;
+		};
+	}
+
+	@Override
+	public Executor visitClassStmt(Stmt.Class stmt) {
+		Evaluator superclassValue = stmt.superclass != null ? this.compile(stmt.superclass) : null;
+		Token superclassName = stmt.superclass != null ? stmt.superclass.name : null;
+
+		Map<Stmt.Function, Executor[]> bodies = new HashMap<>();
+		for (Stmt.Function method : stmt.methods) {
+			bodies.put(method, this.compileFunction(method));
+		}
+
+		return this.define(stmt.access, stmt.slot, upvalues -> {
+			Object superclass = null;
+			if (superclassValue != null) {
+				superclass = superclassValue.evaluate(upvalues);
+				if (!(superclass instanceof LoxClass)) {
+					throw new RuntimeError(superclassName, "Superclass must be a class");
+				}
+			}
+
+			if (superclass != null) {
+				this.defineFrame(stmt.superSlot, new Cell(superclass));
+			}
+
+			Map<Symbol, LoxFunction> methods = new HashMap<>();
+			for (Stmt.Function method : stmt.methods) {
+				boolean isInitializer = method.name.symbol == Symbol.INIT;
+				Cell[] closure = this.capture(method, upvalues);
+				methods.put(method.name.symbol, new ClosureFunction(this, method, closure, isInitializer, bodies.get(method)));
+			}
+
+			return new LoxClass(stmt.name.lexeme, (LoxClass)superclass, methods);
+		});
+	}
+
+	// a function's parameters and body share one scope, see `Resolver.resolveFunction`
+	private Executor[] compileFunction(Stmt.Function function) {
+		return this.compile(function.body);
+	}
+
+	@Override
+	public Executor visitExpressionStmt(Stmt.Expression stmt) {
+		Evaluator expression = this.compile(stmt.expression);
+
+		return upvalues -> {
+			expression.evaluate(upvalues);
+			return Completion.NORMAL;
+		};
+	}
+
+	@Override
+	public Executor visitFunctionStmt(Stmt.Function stmt) {
+		Executor[] body = this.compileFunction(stmt);
+		return this.define(stmt.access, stmt.slot, upvalues -> new ClosureFunction(this, stmt, this.capture(stmt, upvalues), false, body));
+	}
+
+	@Override
+	public Executor visitIfStmt(Stmt.If stmt) {
+		Evaluator condition = this.compile(stmt.condition);
+		Executor thenBranch = this.compile(stmt.thenBranch);
+
+		if (stmt.elseBranch == null) {
+			return upvalues -> {
+				if (Interpreter.isTruthy(condition.evaluate(upvalues))) {
+					return thenBranch.execute(upvalues);
+				}
+
+				return Completion.NORMAL;
+			};
+		}
+
+		Executor elseBranch = this.compile(stmt.elseBranch);
+
+		return upvalues -> {
+			if (Interpreter.isTruthy(condition.evaluate(upvalues))) {
+				return thenBranch.execute(upvalues);
+			} else {
+				return elseBranch.execute(upvalues);
+			}
+		};
+	}
+
+	@Override
+	public Executor visitPrintStmt(Stmt.Print stmt) {
+		Evaluator expression = this.compile(stmt.expression);
+		return upvalues -> {
+			System.out.println(Interpreter.stringify(expression.evaluate(upvalues)));
+			return Completion.NORMAL;
+		};
+	}
+
+	@Override
+	public Executor visitReturnStmt(Stmt.Return stmt) {
+		if (stmt.value == null) {
+			return upvalues -> {
+				this.returnValue = null;
+				return Completion.RETURN;
+			};
+		}
+
+		Evaluator value = this.compile(stmt.value);
+		return upvalues -> {
+			this.returnValue = value.evaluate(upvalues);
+			return Completion.RETURN;
+		};
+	}
+
+	@Override
+	public Executor visitVarStmt(Stmt.Var stmt) {
+		Evaluator initializer = stmt.initializer != null ? this.compile(stmt.initializer) : upvalues -> null;
+		return this.define(stmt.access, stmt.slot, initializer);
+	}
+
+	@Override
+	public Executor visitWhileStmt(Stmt.While stmt) {
+		Evaluator condition = this.compile(stmt.condition);
+		Executor body = this.compile(stmt.body);
+
+		return upvalues -> {
+			while (Interpreter.isTruthy(condition.evaluate(upvalues))) {
+				if (body.execute(upvalues) == Completion.RETURN) {
+					return Completion.RETURN;
+				}
+			}
+
+			return Completion.NORMAL;
+		};
+	}
+
+	private static void checkNumberOperands(Token operator, Object left, Object right) {
+		if (!(left instanceof Double && right instanceof Double)) {
+			throw new RuntimeError(operator, "Operands must be a number.");
+		}
+	}
+}
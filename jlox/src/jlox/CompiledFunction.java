@@ -0,0 +1,6 @@
+package jlox;
+
+// the body of a `Stmt.Function` compiled to JVM bytecode by the `JitCompiler`, or a loop, which returns its `Completion`
+public interface CompiledFunction {
+	Object call(Interpreter interpreter, Cell[] upvalues, Object[] arguments);
+}
@@ -0,0 +1,9 @@
+package jlox;
+
+// how a statement run by the `Interpreter`, or a loop the `JitCompiler` compiled, finished. a `return` leaves its value
+// in `Interpreter.returnValue` and every statement around it passes `RETURN` on, up to the function body, instead of
+// the value being thrown to the call
+public enum Completion {
+	NORMAL,
+	RETURN
+}
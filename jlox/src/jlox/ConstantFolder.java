@@ -0,0 +1,222 @@
+package jlox;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// rewrites the parsed program before it's resolved, so operators whose operands are all literals don't run on every
+// execution. constants are computed by the same `BinaryNode` and `UnaryNode` the `Interpreter` uses, an operation
+// that would throw is left alone, its error is then reported at runtime on the line it's on, as it always was
+public class ConstantFolder implements Expr.Visitor<Expr>, Stmt.Visitor<Stmt> {
+	public List<Stmt> fold(List<Stmt> statements) {
+		List<Stmt> folded = new ArrayList<>(statements.size());
+
+		for (Stmt statement : statements) {
+			folded.add(this.fold(statement));
+		}
+
+		return folded;
+	}
+
+	private Stmt fold(Stmt stmt) {
+		return stmt.accept(this);
+	}
+
+	private Expr fold(Expr expr) {
+		return expr.accept(this);
+	}
+
+	@Override
+	public Expr visitAssignExpr(Expr.Assign expr) {
+		return new Expr.Assign(expr.name, this.fold(expr.value));
+	}
+
+	@Override
+	public Expr visitBinaryExpr(Expr.Binary expr) {
+		Expr left = this.fold(expr.left);
+		Expr right = this.fold(expr.right);
+		Expr.Binary binary = new Expr.Binary(left, expr.operator, right);
+
+		if (left instanceof Expr.Literal && right instanceof Expr.Literal) {
+			try {
+				return new Expr.Literal(binary.node.execute(binary, ((Expr.Literal)left).value, ((Expr.Literal)right).value));
+			} catch (RuntimeError e) {
+				// e.g. `1 + "a"`, the node specialized on the literals is discarded with the error
+				return new Expr.Binary(left, expr.operator, right);
+			}
+		}
+
+		return binary;
+	}
+
+	@Override
+	public Expr visitCallExpr(Expr.Call expr) {
+		List<Expr> arguments = new ArrayList<>(expr.arguments.size());
+
+		for (Expr argument : expr.arguments) {
+			arguments.add(this.fold(argument));
+		}
+
+		return new Expr.Call(this.fold(expr.callee), expr.paren, arguments);
+	}
+
+	// like an `if`, a constant condition leaves only the branch it takes
+	@Override
+	public Expr visitConditionalExpr(Expr.Conditional expr) {
+		Expr condition = this.fold(expr.condition);
+		Expr thenBranch = this.fold(expr.thenBranch);
+		Expr elseBranch = this.fold(expr.elseBranch);
+
+		if (condition instanceof Expr.Literal) {
+			return Interpreter.isTruthy(((Expr.Literal)condition).value) ? thenBranch : elseBranch;
+		}
+
+		return new Expr.Conditional(condition, thenBranch, elseBranch);
+	}
+
+	@Override
+	public Expr visitGetExpr(Expr.Get expr) {
+		return new Expr.Get(this.fold(expr.object), expr.name);
+	}
+
+	// only the parser needs parentheses
+	@Override
+	public Expr visitGroupingExpr(Expr.Grouping expr) {
+		return this.fold(expr.expression);
+	}
+
+	@Override
+	public Expr visitLetExpr(Expr.Let expr) {
+		List<Stmt.Var> bindings = new ArrayList<>(expr.bindings.size());
+
+		for (Stmt.Var binding : expr.bindings) {
+			bindings.add((Stmt.Var)this.fold(binding));
+		}
+
+		return new Expr.Let(bindings, this.fold(expr.body));
+	}
+
+	@Override
+	public Expr visitLiteralExpr(Expr.Literal expr) {
+		return expr;
+	}
+
+	// a constant left operand decides which operand is the result
+	@Override
+	public Expr visitLogicalExpr(Expr.Logical expr) {
+		Expr left = this.fold(expr.left);
+		Expr right = this.fold(expr.right);
+
+		if (left instanceof Expr.Literal) {
+			boolean isTruthy = Interpreter.isTruthy(((Expr.Literal)left).value);
+
+			if (expr.operator.type == TokenType.OR) {
+				return isTruthy ? left : right;
+			} else {
+				return isTruthy ? right : left;
+			}
+		}
+
+		return new Expr.Logical(left, expr.operator, right);
+	}
+
+	@Override
+	public Expr visitSetExpr(Expr.Set expr) {
+		return new Expr.Set(this.fold(expr.object), expr.name, this.fold(expr.value));
+	}
+
+	@Override
+	public Expr visitSuperExpr(Expr.Super expr) {
+		return expr;
+	}
+
+	@Override
+	public Expr visitThisExpr(Expr.This expr) {
+		return expr;
+	}
+
+	@Override
+	public Expr visitUnaryExpr(Expr.Unary expr) {
+		Expr right = this.fold(expr.right);
+		Expr.Unary unary = new Expr.Unary(expr.operator, right);
+
+		if (right instanceof Expr.Literal) {
+			try {
+				return new Expr.Literal(unary.node.execute(unary, ((Expr.Literal)right).value));
+			} catch (RuntimeError e) {
+				return new Expr.Unary(expr.operator, right);
+			}
+		}
+
+		return unary;
+	}
+
+	@Override
+	public Expr visitVariableExpr(Expr.Variable expr) {
+		return expr;
+	}
+
+	@Override
+	public Stmt visitBlockStmt(Stmt.Block stmt) {
+		return new Stmt.Block(this.fold(stmt.statements));
+	}
+
+	@Override
+	public Stmt visitClassStmt(Stmt.Class stmt) {
+		List<Stmt.Function> methods = new ArrayList<>(stmt.methods.size());
+
+		for (Stmt.Function method : stmt.methods) {
+			methods.add((Stmt.Function)this.fold(method));
+		}
+
+		return new Stmt.Class(stmt.name, stmt.superclass, methods);
+	}
+
+	@Override
+	public Stmt visitExpressionStmt(Stmt.Expression stmt) {
+		return new Stmt.Expression(this.fold(stmt.expression));
+	}
+
+	@Override
+	public Stmt visitFunctionStmt(Stmt.Function stmt) {
+		return new Stmt.Function(stmt.name, stmt.params, this.fold(stmt.body));
+	}
+
+	// a constant condition leaves only the branch it takes, the branches are statements and can't declare anything,
+	// so no scope changes
+	@Override
+	public Stmt visitIfStmt(Stmt.If stmt) {
+		Expr condition = this.fold(stmt.condition);
+		Stmt thenBranch = this.fold(stmt.thenBranch);
+		Stmt elseBranch = stmt.elseBranch != null ? this.fold(stmt.elseBranch) : null;
+
+		if (condition instanceof Expr.Literal) {
+			if (Interpreter.isTruthy(((Expr.Literal)condition).value)) {
+				return thenBranch;
+			}
+
+			return elseBranch != null ? elseBranch : new Stmt.Block(new ArrayList<>());
+		}
+
+		return new Stmt.If(condition, thenBranch, elseBranch);
+	}
+
+	@Override
+	public Stmt visitPrintStmt(Stmt.Print stmt) {
+		return new Stmt.Print(this.fold(stmt.expression));
+	}
+
+	@Override
+	public Stmt visitReturnStmt(Stmt.Return stmt) {
+		return new Stmt.Return(stmt.keyword, stmt.value != null ? this.fold(stmt.value) : null);
+	}
+
+	@Override
+	public Stmt visitVarStmt(Stmt.Var stmt) {
+		return new Stmt.Var(stmt.name, stmt.initializer != null ? this.fold(stmt.initializer) : null);
+	}
+
+	@Override
+	public Stmt visitWhileStmt(Stmt.While stmt) {
+		return new Stmt.While(this.fold(stmt.condition), this.fold(stmt.body));
+	}
+}
@@ -1,61 +1,69 @@
 package jlox;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Objects;
+import java.util.Arrays;
 
+// storage for global variables, locals live in frames on the `Interpreter`'s stack. the `Resolver` gives every global
+// name a slot, kept on its `Symbol` and so the same in every `Environment`, the globals of whichever interpreter runs
+// the program are indexed directly. a variable stays undefined until its declaration runs, using it before that is
+// still a runtime error
 public class Environment {
-	public final Environment enclosing;
-	private final Map<String, Object> values = new HashMap<>();
+	private static final int INITIAL_CAPACITY = 16;
+	// slots handed out so far, shared by all environments so it doesn't matter which one resolved code runs in
+	private static int slots = 0;
 
-	public Environment() {
-		this.enclosing = null;
-	}
+	// stands in for the value of a global no declaration has defined
+	private static final Object UNDEFINED = new Object();
 
-	public Environment(Environment enclosing) {
-		this.enclosing = enclosing;
-	}
+	// slots past the end are undefined too, the table only grows once a later one is defined
+	private Object[] values = Environment.undefined(Environment.INITIAL_CAPACITY);
 
-	public Object get(Token name) {
-		if (this.values.containsKey(name.lexeme)) {
-			return this.values.get(name.lexeme);
-		} else if (this.enclosing != null) {
-			return this.enclosing.get(name);
-		} else {
-			throw new RuntimeError(name, "Undefined variable '" + name.lexeme + "'.");
+	// the slot of the global `name`, it's given one the first time a declaration or use of it is resolved
+	static int slotOf(Symbol name) {
+		if (name.globalSlot < 0) {
+			name.globalSlot = Environment.slots;
+			Environment.slots += 1;
 		}
-	}
 
-	public void define(String name, Object value) {
-		this.values.put(name, value);
+		return name.globalSlot;
 	}
 
-	public Environment ancestor(int distance) {
-		Environment environment = this;
+	public Object get(Token name, int slot) {
+		if (slot < this.values.length) {
+			Object value = this.values[slot];
 
-		for (int i = 0; i < distance; i += 1) {
-			assert environment != null;
-			environment = environment.enclosing;
+			if (value != Environment.UNDEFINED) {
+				return value;
+			}
 		}
 
-		return environment;
+		throw new RuntimeError(name, "Undefined variable '" + name.lexeme + "'.");
 	}
 
-	public Object getAt(int distance, String name) {
-		return this.ancestor(distance).values.get(name);
+	public void define(String name, Object value) {
+		this.define(Environment.slotOf(Symbol.intern(name)), value);
 	}
 
-	public void assignAt(int distance, Token name, Object value) {
-		this.ancestor(distance).values.put(name.lexeme, value);
+	public void define(int slot, Object value) {
+		if (slot >= this.values.length) {
+			int length = this.values.length;
+			this.values = Arrays.copyOf(this.values, Math.max(length * 2, slot + 1));
+			Arrays.fill(this.values, length, this.values.length, Environment.UNDEFINED);
+		}
+
+		this.values[slot] = value;
 	}
 
-	public void assign(Token name, Object value) {
-		if (this.values.containsKey(name.lexeme)) {
-			this.values.put(name.lexeme, value);
-		} else if (this.enclosing != null) {
-			this.enclosing.assign(name, value);
+	public void assign(Token name, int slot, Object value) {
+		if (slot < this.values.length && this.values[slot] != Environment.UNDEFINED) {
+			this.values[slot] = value;
 		} else {
 			throw new RuntimeError(name, "Undefined variable '" + name.lexeme + "'.");
 		}
 	}
+
+	private static Object[] undefined(int length) {
+		Object[] values = new Object[length];
+		Arrays.fill(values, Environment.UNDEFINED);
+		return values;
+	}
 }
@@ -7,8 +7,10 @@ abstract class Expr {
 		T visitAssignExpr(Assign expr);
 		T visitBinaryExpr(Binary expr);
 		T visitCallExpr(Call expr);
+		T visitConditionalExpr(Conditional expr);
 		T visitGetExpr(Get expr);
 		T visitGroupingExpr(Grouping expr);
+		T visitLetExpr(Let expr);
 		T visitLiteralExpr(Literal expr);
 		T visitLogicalExpr(Logical expr);
 		T visitSetExpr(Set expr);
@@ -21,6 +23,8 @@ abstract class Expr {
 	static class Assign extends Expr {
 		public final Token name;
 		public final Expr value;
+		public Access access = Access.GLOBAL;
+		public int slot = -1;
 
 		Assign(Token name, Expr value) {
 			this.name = name;
@@ -37,6 +41,7 @@ abstract class Expr {
 		public final Expr left;
 		public final Token operator;
 		public final Expr right;
+		public BinaryNode node = BinaryNode.UNINITIALIZED;
 
 		Binary(Expr left, Token operator, Expr right) {
 			this.left = left;
@@ -67,9 +72,27 @@ abstract class Expr {
 		}
 	}
 
+	static class Conditional extends Expr {
+		public final Expr condition;
+		public final Expr thenBranch;
+		public final Expr elseBranch;
+
+		Conditional(Expr condition, Expr thenBranch, Expr elseBranch) {
+			this.condition = condition;
+			this.thenBranch = thenBranch;
+			this.elseBranch = elseBranch;
+		}
+
+		@Override
+		public <T> T accept(Visitor<T> visitor) {
+			return visitor.visitConditionalExpr(this);
+		}
+	}
+
 	static class Get extends Expr {
 		public final Expr object;
 		public final Token name;
+		public PropertyCache cache = PropertyCache.UNINITIALIZED;
 
 		Get(Expr object, Token name) {
 			this.object = object;
@@ -95,6 +118,21 @@ abstract class Expr {
 		}
 	}
 
+	static class Let extends Expr {
+		public final List<Stmt.Var> bindings;
+		public final Expr body;
+
+		Let(List<Stmt.Var> bindings, Expr body) {
+			this.bindings = bindings;
+			this.body = body;
+		}
+
+		@Override
+		public <T> T accept(Visitor<T> visitor) {
+			return visitor.visitLetExpr(this);
+		}
+	}
+
 	static class Literal extends Expr {
 		public final Object value;
 
@@ -112,6 +150,7 @@ abstract class Expr {
 		public final Expr left;
 		public final Token operator;
 		public final Expr right;
+		public LogicalNode node = LogicalNode.UNINITIALIZED;
 
 		Logical(Expr left, Token operator, Expr right) {
 			this.left = left;
@@ -129,6 +168,7 @@ abstract class Expr {
 		public final Expr object;
 		public final Token name;
 		public final Expr value;
+		public PropertyCache cache = PropertyCache.UNINITIALIZED;
 
 		Set(Expr object, Token name, Expr value) {
 			this.object = object;
@@ -145,6 +185,9 @@ abstract class Expr {
 	static class Super extends Expr {
 		public final Token keyword;
 		public final Token method;
+		public Access access = Access.GLOBAL;
+		public int slot = -1;
+		public Expr.This receiver = null;
 
 		Super(Token keyword, Token method) {
 			this.keyword = keyword;
@@ -159,6 +202,8 @@ abstract class Expr {
 
 	static class This extends Expr {
 		public final Token keyword;
+		public Access access = Access.GLOBAL;
+		public int slot = -1;
 
 		This(Token keyword) {
 			this.keyword = keyword;
@@ -173,6 +218,7 @@ abstract class Expr {
 	static class Unary extends Expr {
 		public final Token operator;
 		public final Expr right;
+		public UnaryNode node = UnaryNode.UNINITIALIZED;
 
 		Unary(Token operator, Expr right) {
 			this.operator = operator;
@@ -187,6 +233,8 @@ abstract class Expr {
 
 	static class Variable extends Expr {
 		public final Token name;
+		public Access access = Access.GLOBAL;
+		public int slot = -1;
 
 		Variable(Token name) {
 			this.name = name;
@@ -0,0 +1,650 @@
+package jlox;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Stack;
+
+// replaces calls to small top-level functions with their body, before the program is resolved, e.g. `square(i)`
+// becomes `i * i`. a function qualifies when all its body does is return, maybe after some `if`s, which become an
+// `Expr.Conditional`, e.g. `abs(x)` becomes `x < 0 ? -x : x`. a call is only inlined when it can't tell:
+// - the function is declared once and never assigned, and it's defined by the time any code after it runs, so
+//   only calls after its declaration are inlined
+// - the call refers to the global, and the globals the body uses aren't shadowed where the call is
+// - every argument is still evaluated once, in order, before the body. a literal is put where the parameter is
+//   used, and so is a local or "this" when every argument is one of those and the body can't run code that assigns
+//   one. any other argument is bound to a temporary by an `Expr.Let`, e.g. `square(i + 1)` becomes
+//   `let t = i + 1 in t * t`
+// the body keeps its tokens, a runtime error in it is still reported on the line it's on in the function
+public class Inliner implements Expr.Visitor<Expr>, Stmt.Visitor<Stmt> {
+	// expressions in the body of a function that's inlined, past that a call is cheaper than the copies
+	private static final int MAX_SIZE = 24;
+
+	// a function that can be inlined, with what decides where
+	private static class Candidate {
+		public final Stmt.Function declaration;
+		public final Expr body;
+		// globals the body refers to, other than its parameters
+		public final Set<Symbol> globals = new HashSet<>();
+		// the body makes calls or assigns, either could change a local passed as an argument
+		public boolean hasEffects = false;
+		public boolean isRecursive = false;
+		// the parameter would have to be a variable of its own again
+		public boolean assignsParameter = false;
+		public int size = 0;
+
+		public Candidate(Stmt.Function declaration, Expr body) {
+			this.declaration = declaration;
+			this.body = body;
+		}
+	}
+
+	// locals declared by the scopes around the code being rewritten, top level code declares globals
+	private final Stack<Set<Symbol>> scopes = new Stack<>();
+	// names assigned anywhere, found by a first pass that rewrites nothing
+	private final Set<Symbol> assigned = new HashSet<>();
+	private final Map<Symbol, Candidate> candidates = new HashMap<>();
+	// candidates whose declaration precedes the code being rewritten
+	private final Set<Symbol> declared = new HashSet<>();
+	private boolean inlining = false;
+	// statements `returned` may still look at for the function it's turning into an expression
+	private int budget = 0;
+	// temporaries made so far, each gets a name of its own
+	private int temporaries = 0;
+
+	public List<Stmt> inline(List<Stmt> statements) {
+		this.rewrite(statements);
+		this.findCandidates(statements);
+
+		this.inlining = true;
+		List<Stmt> inlined = new ArrayList<>(statements.size());
+
+		for (Stmt statement : statements) {
+			inlined.add(this.rewrite(statement));
+
+			if (statement instanceof Stmt.Function) {
+				Symbol name = ((Stmt.Function)statement).name.symbol;
+
+				if (this.candidates.containsKey(name)) {
+					this.declared.add(name);
+				}
+			}
+		}
+
+		return inlined;
+	}
+
+	private void findCandidates(List<Stmt> statements) {
+		Map<Symbol, Integer> declarations = new HashMap<>();
+
+		for (Stmt statement : statements) {
+			Token name = null;
+
+			if (statement instanceof Stmt.Function) {
+				name = ((Stmt.Function)statement).name;
+			} else if (statement instanceof Stmt.Var) {
+				name = ((Stmt.Var)statement).name;
+			} else if (statement instanceof Stmt.Class) {
+				name = ((Stmt.Class)statement).name;
+			}
+
+			if (name != null) {
+				declarations.merge(name.symbol, 1, Integer::sum);
+			}
+		}
+
+		for (Stmt statement : statements) {
+			if (!(statement instanceof Stmt.Function)) continue;
+
+			Stmt.Function function = (Stmt.Function)statement;
+			Symbol name = function.name.symbol;
+
+			if (declarations.get(name) != 1 || this.assigned.contains(name)) continue;
+
+			this.budget = Inliner.MAX_SIZE;
+			Expr body = this.returned(function.body);
+			if (body == null) continue;
+
+			Candidate candidate = new Candidate(function, body);
+			new Inspector(candidate).inspect(body);
+
+			if (!candidate.isRecursive && !candidate.assignsParameter && candidate.size <= Inliner.MAX_SIZE) {
+				this.candidates.put(name, candidate);
+			}
+		}
+	}
+
+	// what running `statements` returns as one expression, null when they do anything but return. the branches of an
+	// `if` each go on with the statements after it, so `if (x < 0) return -x; return x;` is `x < 0 ? -x : x`
+	private Expr returned(List<Stmt> statements) {
+		// copying what follows an `if` into both branches doubles it, a long body would take long to even look at
+		this.budget -= 1;
+		if (this.budget < 0) return null;
+
+		// running off the end returns nil, like a `return` without a value
+		if (statements.isEmpty()) {
+			return new Expr.Literal(null);
+		}
+
+		Stmt first = statements.get(0);
+		List<Stmt> rest = statements.subList(1, statements.size());
+
+		if (first instanceof Stmt.Return) {
+			Expr value = ((Stmt.Return)first).value;
+			return value != null ? value : new Expr.Literal(null);
+		} else if (first instanceof Stmt.Block) {
+			// a block of statements that only return declares nothing, it's the same as its statements
+			return this.returned(Inliner.concat(((Stmt.Block)first).statements, rest));
+		} else if (first instanceof Stmt.If) {
+			Stmt.If branch = (Stmt.If)first;
+			Expr thenBranch = this.returned(Inliner.concat(List.of(branch.thenBranch), rest));
+			Expr elseBranch = this.returned(branch.elseBranch != null ? Inliner.concat(List.of(branch.elseBranch), rest) : rest);
+
+			if (thenBranch == null || elseBranch == null) return null;
+
+			return new Expr.Conditional(branch.condition, thenBranch, elseBranch);
+		}
+
+		return null;
+	}
+
+	private static List<Stmt> concat(List<Stmt> first, List<Stmt> second) {
+		List<Stmt> statements = new ArrayList<>(first.size() + second.size());
+		statements.addAll(first);
+		statements.addAll(second);
+		return statements;
+	}
+
+	private List<Stmt> rewrite(List<Stmt> statements) {
+		List<Stmt> rewritten = new ArrayList<>(statements.size());
+
+		for (Stmt statement : statements) {
+			rewritten.add(this.rewrite(statement));
+		}
+
+		return rewritten;
+	}
+
+	private Stmt rewrite(Stmt stmt) {
+		return stmt.accept(this);
+	}
+
+	private Expr rewrite(Expr expr) {
+		return expr.accept(this);
+	}
+
+	private void declare(Symbol name) {
+		if (!this.scopes.isEmpty()) {
+			this.scopes.peek().add(name);
+		}
+	}
+
+	private boolean isLocal(Symbol name) {
+		for (Set<Symbol> scope : this.scopes) {
+			if (scope.contains(name)) return true;
+		}
+
+		return false;
+	}
+
+	// null when the call has to stay one
+	private Candidate candidateFor(Expr.Call call) {
+		if (!this.inlining || !(call.callee instanceof Expr.Variable)) return null;
+
+		Symbol name = ((Expr.Variable)call.callee).name.symbol;
+		Candidate candidate = this.candidates.get(name);
+
+		if (candidate == null || !this.declared.contains(name) || this.isLocal(name)) return null;
+		if (call.arguments.size() != candidate.declaration.params.size()) return null;
+
+		for (Symbol global : candidate.globals) {
+			if (this.isLocal(global)) return null;
+		}
+
+		return candidate;
+	}
+
+	private boolean isLocalRead(Expr expr) {
+		return expr instanceof Expr.This || expr instanceof Expr.Variable && this.isLocal(((Expr.Variable)expr).name.symbol);
+	}
+
+	// a name the program can't use, for the temporary bound to `param`
+	private Token temporary(Token param, Token paren) {
+		this.temporaries += 1;
+		return new Token(TokenType.IDENTIFIER, param.lexeme + "#" + this.temporaries, null, paren.line);
+	}
+
+	@Override
+	public Expr visitAssignExpr(Expr.Assign expr) {
+		if (!this.inlining) {
+			this.assigned.add(expr.name.symbol);
+		}
+
+		return new Expr.Assign(expr.name, this.rewrite(expr.value));
+	}
+
+	@Override
+	public Expr visitBinaryExpr(Expr.Binary expr) {
+		return new Expr.Binary(this.rewrite(expr.left), expr.operator, this.rewrite(expr.right));
+	}
+
+	@Override
+	public Expr visitCallExpr(Expr.Call expr) {
+		List<Expr> arguments = new ArrayList<>(expr.arguments.size());
+
+		for (Expr argument : expr.arguments) {
+			arguments.add(this.rewrite(argument));
+		}
+
+		Expr.Call call = new Expr.Call(this.rewrite(expr.callee), expr.paren, arguments);
+		Candidate candidate = this.candidateFor(call);
+
+		if (candidate == null) {
+			return call;
+		}
+
+		// a local is read where the parameter is used, after every argument is evaluated
+		boolean readsLocals = !candidate.hasEffects;
+		for (Expr argument : arguments) {
+			readsLocals &= argument instanceof Expr.Literal || this.isLocalRead(argument);
+		}
+
+		Map<Symbol, Expr> parameters = new HashMap<>();
+		List<Stmt.Var> bindings = new ArrayList<>();
+
+		for (int i = 0; i < arguments.size(); i += 1) {
+			Token param = candidate.declaration.params.get(i);
+			Expr argument = arguments.get(i);
+
+			if (argument instanceof Expr.Literal || readsLocals) {
+				parameters.put(param.symbol, argument);
+			} else {
+				Token temporary = this.temporary(param, expr.paren);
+				bindings.add(new Stmt.Var(temporary, argument));
+				parameters.put(param.symbol, new Expr.Variable(temporary));
+			}
+		}
+
+		Expr body = new Substitution(parameters).copy(candidate.body);
+		return bindings.isEmpty() ? body : new Expr.Let(bindings, body);
+	}
+
+	@Override
+	public Expr visitConditionalExpr(Expr.Conditional expr) {
+		return new Expr.Conditional(this.rewrite(expr.condition), this.rewrite(expr.thenBranch), this.rewrite(expr.elseBranch));
+	}
+
+	@Override
+	public Expr visitGetExpr(Expr.Get expr) {
+		return new Expr.Get(this.rewrite(expr.object), expr.name);
+	}
+
+	@Override
+	public Expr visitGroupingExpr(Expr.Grouping expr) {
+		return new Expr.Grouping(this.rewrite(expr.expression));
+	}
+
+	// the parser makes none of these, they only come from inlining
+	@Override
+	public Expr visitLetExpr(Expr.Let expr) {
+		this.scopes.push(new HashSet<>());
+		List<Stmt.Var> bindings = new ArrayList<>(expr.bindings.size());
+
+		for (Stmt.Var binding : expr.bindings) {
+			bindings.add((Stmt.Var)this.rewrite(binding));
+		}
+
+		Expr body = this.rewrite(expr.body);
+		this.scopes.pop();
+		return new Expr.Let(bindings, body);
+	}
+
+	@Override
+	public Expr visitLiteralExpr(Expr.Literal expr) {
+		return expr;
+	}
+
+	@Override
+	public Expr visitLogicalExpr(Expr.Logical expr) {
+		return new Expr.Logical(this.rewrite(expr.left), expr.operator, this.rewrite(expr.right));
+	}
+
+	@Override
+	public Expr visitSetExpr(Expr.Set expr) {
+		return new Expr.Set(this.rewrite(expr.object), expr.name, this.rewrite(expr.value));
+	}
+
+	@Override
+	public Expr visitSuperExpr(Expr.Super expr) {
+		return new Expr.Super(expr.keyword, expr.method);
+	}
+
+	@Override
+	public Expr visitThisExpr(Expr.This expr) {
+		return new Expr.This(expr.keyword);
+	}
+
+	@Override
+	public Expr visitUnaryExpr(Expr.Unary expr) {
+		return new Expr.Unary(expr.operator, this.rewrite(expr.right));
+	}
+
+	@Override
+	public Expr visitVariableExpr(Expr.Variable expr) {
+		return new Expr.Variable(expr.name);
+	}
+
+	@Override
+	public Stmt visitBlockStmt(Stmt.Block stmt) {
+		this.scopes.push(new HashSet<>());
+		List<Stmt> statements = this.rewrite(stmt.statements);
+		this.scopes.pop();
+		return new Stmt.Block(statements);
+	}
+
+	@Override
+	public Stmt visitClassStmt(Stmt.Class stmt) {
+		this.declare(stmt.name.symbol);
+		Expr.Variable superclass = stmt.superclass != null ? new Expr.Variable(stmt.superclass.name) : null;
+		List<Stmt.Function> methods = new ArrayList<>(stmt.methods.size());
+
+		for (Stmt.Function method : stmt.methods) {
+			methods.add(this.rewriteFunction(method));
+		}
+
+		return new Stmt.Class(stmt.name, superclass, methods);
+	}
+
+	@Override
+	public Stmt visitExpressionStmt(Stmt.Expression stmt) {
+		return new Stmt.Expression(this.rewrite(stmt.expression));
+	}
+
+	@Override
+	public Stmt visitFunctionStmt(Stmt.Function stmt) {
+		this.declare(stmt.name.symbol);
+		return this.rewriteFunction(stmt);
+	}
+
+	private Stmt.Function rewriteFunction(Stmt.Function function) {
+		Set<Symbol> scope = new HashSet<>();
+
+		for (Token param : function.params) {
+			scope.add(param.symbol);
+		}
+
+		this.scopes.push(scope);
+		List<Stmt> body = this.rewrite(function.body);
+		this.scopes.pop();
+		return new Stmt.Function(function.name, function.params, body);
+	}
+
+	@Override
+	public Stmt visitIfStmt(Stmt.If stmt) {
+		Stmt elseBranch = stmt.elseBranch != null ? this.rewrite(stmt.elseBranch) : null;
+		return new Stmt.If(this.rewrite(stmt.condition), this.rewrite(stmt.thenBranch), elseBranch);
+	}
+
+	@Override
+	public Stmt visitPrintStmt(Stmt.Print stmt) {
+		return new Stmt.Print(this.rewrite(stmt.expression));
+	}
+
+	@Override
+	public Stmt visitReturnStmt(Stmt.Return stmt) {
+		return new Stmt.Return(stmt.keyword, stmt.value != null ? this.rewrite(stmt.value) : null);
+	}
+
+	// declared before its initializer is rewritten, a body using a global of the same name can't be inlined there
+	@Override
+	public Stmt visitVarStmt(Stmt.Var stmt) {
+		this.declare(stmt.name.symbol);
+		return new Stmt.Var(stmt.name, stmt.initializer != null ? this.rewrite(stmt.initializer) : null);
+	}
+
+	@Override
+	public Stmt visitWhileStmt(Stmt.While stmt) {
+		return new Stmt.While(this.rewrite(stmt.condition), this.rewrite(stmt.body));
+	}
+
+	// what a candidate's body refers to and does, an expression declares nothing so any name that isn't a parameter
+	// is a global
+	private static class Inspector implements Expr.Visitor<Void> {
+		private final Candidate candidate;
+		private final Set<Symbol> parameters = new HashSet<>();
+
+		public Inspector(Candidate candidate) {
+			this.candidate = candidate;
+
+			for (Token param : candidate.declaration.params) {
+				this.parameters.add(param.symbol);
+			}
+		}
+
+		public void inspect(Expr expr) {
+			this.candidate.size += 1;
+			expr.accept(this);
+		}
+
+		private void refer(Token name) {
+			if (!this.parameters.contains(name.symbol)) {
+				this.candidate.globals.add(name.symbol);
+			}
+
+			if (name.symbol == this.candidate.declaration.name.symbol) {
+				this.candidate.isRecursive = true;
+			}
+		}
+
+		@Override
+		public Void visitAssignExpr(Expr.Assign expr) {
+			this.candidate.hasEffects = true;
+			this.candidate.assignsParameter |= this.parameters.contains(expr.name.symbol);
+			this.refer(expr.name);
+			this.inspect(expr.value);
+			return null;
+		}
+
+		@Override
+		public Void visitBinaryExpr(Expr.Binary expr) {
+			this.inspect(expr.left);
+			this.inspect(expr.right);
+			return null;
+		}
+
+		@Override
+		public Void visitCallExpr(Expr.Call expr) {
+			this.candidate.hasEffects = true;
+			this.inspect(expr.callee);
+
+			for (Expr argument : expr.arguments) {
+				this.inspect(argument);
+			}
+
+			return null;
+		}
+
+		@Override
+		public Void visitConditionalExpr(Expr.Conditional expr) {
+			this.inspect(expr.condition);
+			this.inspect(expr.thenBranch);
+			this.inspect(expr.elseBranch);
+			return null;
+		}
+
+		@Override
+		public Void visitGetExpr(Expr.Get expr) {
+			this.inspect(expr.object);
+			return null;
+		}
+
+		@Override
+		public Void visitGroupingExpr(Expr.Grouping expr) {
+			this.inspect(expr.expression);
+			return null;
+		}
+
+		// bodies are made of what the parser made, but a binding would be as local as a parameter
+		@Override
+		public Void visitLetExpr(Expr.Let expr) {
+			for (Stmt.Var binding : expr.bindings) {
+				this.parameters.add(binding.name.symbol);
+				this.inspect(binding.initializer);
+			}
+
+			this.inspect(expr.body);
+			return null;
+		}
+
+		@Override
+		public Void visitLiteralExpr(Expr.Literal expr) {
+			return null;
+		}
+
+		@Override
+		public Void visitLogicalExpr(Expr.Logical expr) {
+			this.inspect(expr.left);
+			this.inspect(expr.right);
+			return null;
+		}
+
+		@Override
+		public Void visitSetExpr(Expr.Set expr) {
+			this.candidate.hasEffects = true;
+			this.inspect(expr.object);
+			this.inspect(expr.value);
+			return null;
+		}
+
+		@Override
+		public Void visitSuperExpr(Expr.Super expr) {
+			return null;
+		}
+
+		@Override
+		public Void visitThisExpr(Expr.This expr) {
+			return null;
+		}
+
+		@Override
+		public Void visitUnaryExpr(Expr.Unary expr) {
+			this.inspect(expr.right);
+			return null;
+		}
+
+		@Override
+		public Void visitVariableExpr(Expr.Variable expr) {
+			this.refer(expr.name);
+			return null;
+		}
+	}
+
+	// a copy of a candidate's body with the arguments in place of its parameters, every site gets nodes of its own
+	private static class Substitution implements Expr.Visitor<Expr> {
+		private final Map<Symbol, Expr> parameters;
+
+		public Substitution(Map<Symbol, Expr> parameters) {
+			this.parameters = parameters;
+		}
+
+		public Expr copy(Expr expr) {
+			return expr.accept(this);
+		}
+
+		@Override
+		public Expr visitAssignExpr(Expr.Assign expr) {
+			return new Expr.Assign(expr.name, this.copy(expr.value));
+		}
+
+		@Override
+		public Expr visitBinaryExpr(Expr.Binary expr) {
+			return new Expr.Binary(this.copy(expr.left), expr.operator, this.copy(expr.right));
+		}
+
+		@Override
+		public Expr visitCallExpr(Expr.Call expr) {
+			List<Expr> arguments = new ArrayList<>(expr.arguments.size());
+
+			for (Expr argument : expr.arguments) {
+				arguments.add(this.copy(argument));
+			}
+
+			return new Expr.Call(this.copy(expr.callee), expr.paren, arguments);
+		}
+
+		@Override
+		public Expr visitConditionalExpr(Expr.Conditional expr) {
+			return new Expr.Conditional(this.copy(expr.condition), this.copy(expr.thenBranch), this.copy(expr.elseBranch));
+		}
+
+		@Override
+		public Expr visitGetExpr(Expr.Get expr) {
+			return new Expr.Get(this.copy(expr.object), expr.name);
+		}
+
+		@Override
+		public Expr visitGroupingExpr(Expr.Grouping expr) {
+			return new Expr.Grouping(this.copy(expr.expression));
+		}
+
+		@Override
+		public Expr visitLetExpr(Expr.Let expr) {
+			List<Stmt.Var> bindings = new ArrayList<>(expr.bindings.size());
+
+			for (Stmt.Var binding : expr.bindings) {
+				bindings.add(new Stmt.Var(binding.name, this.copy(binding.initializer)));
+			}
+
+			return new Expr.Let(bindings, this.copy(expr.body));
+		}
+
+		@Override
+		public Expr visitLiteralExpr(Expr.Literal expr) {
+			return expr;
+		}
+
+		@Override
+		public Expr visitLogicalExpr(Expr.Logical expr) {
+			return new Expr.Logical(this.copy(expr.left), expr.operator, this.copy(expr.right));
+		}
+
+		@Override
+		public Expr visitSetExpr(Expr.Set expr) {
+			return new Expr.Set(this.copy(expr.object), expr.name, this.copy(expr.value));
+		}
+
+		@Override
+		public Expr visitSuperExpr(Expr.Super expr) {
+			return new Expr.Super(expr.keyword, expr.method);
+		}
+
+		@Override
+		public Expr visitThisExpr(Expr.This expr) {
+			return new Expr.This(expr.keyword);
+		}
+
+		@Override
+		public Expr visitUnaryExpr(Expr.Unary expr) {
+			return new Expr.Unary(expr.operator, this.copy(expr.right));
+		}
+
+		// arguments are literals, locals, "this" and temporaries, copied so they get sites of their own too
+		@Override
+		public Expr visitVariableExpr(Expr.Variable expr) {
+			Expr argument = this.parameters.get(expr.name.symbol);
+
+			if (argument == null) {
+				return new Expr.Variable(expr.name);
+			} else if (argument instanceof Expr.Variable) {
+				return new Expr.Variable(((Expr.Variable)argument).name);
+			} else if (argument instanceof Expr.This) {
+				return new Expr.This(((Expr.This)argument).keyword);
+			}
+
+			return argument;
+		}
+	}
+}
@@ -1,35 +1,48 @@
 package jlox;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
+public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Completion> {
+	// stands in for a number that isn't boxed, both in a slot and as what the `Interpreter` evaluates a number to
+	public static final Object NUMBER = new Object() {
+		@Override
+		public String toString() {
+			return "<unboxed number>";
+		}
+	};
+
 	public final Environment globals = new Environment();
-	private Environment environment = globals;
-	private final Map<Expr, Integer> locals = new HashMap<>();
+	// the cells of the locals the running closure captured, see `Resolver.resolveUpvalue`. `null` in top level code
+	private Cell[] upvalues = null;
+	// locals live in a frame on this stack, like clox's, a slot holding `NUMBER` has its value unboxed in
+	// `numbers`. the slot of a local closures capture holds its `Cell` instead
+	private Object[] stack = new Object[1024];
+	private double[] numbers = new double[1024];
+	// first slot of the running function's frame, and the first slot past those it has defined, where the frame of
+	// the next call starts
+	private int frame = 0;
+	private int top = 0;
+	// numbers aren't boxed while they're evaluated, an expression that evaluates to `Interpreter.NUMBER` left its
+	// value here. anything that keeps a value outside of a local, or hands it to other code, boxes it with `box`
+	private double number;
+	// what the last `return` returned, unboxed like any other evaluation
+	Object returnValue = null;
 
 	public Interpreter() {
-		this.globals.define("clock", new LoxCallable() {
-			@Override
-			public int arity() {
-				return 0;
-			}
-
-			@Override
-			public Object call(Interpreter interpreter, List<Object> arguments) {
-				return (double)System.currentTimeMillis() / 1000.0;
-			}
-
-			@Override
-			public String toString() {
-				return "<native fun>";
-			}
-		});
+		this.globals.define("clock", Natives.CLOCK);
 	}
 
-	public void interpret(List<Stmt> statements) {
+	// `frameSize` is the slots the `Resolver` gave the locals of top level code
+	public void interpret(List<Stmt> statements, int frameSize) {
+		// a runtime error left the frames of the calls it unwound on the stack
+		this.upvalues = null;
+		this.frame = 0;
+		this.top = 0;
+		this.reserve(frameSize);
+
 		try {
 			for (Stmt statement : statements) {
 				this.execute(statement);
@@ -39,92 +52,288 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 		}
 	}
 
-	private void execute(Stmt stmt) {
-		stmt.accept(this);
+	private Completion execute(Stmt stmt) {
+		return stmt.accept(this);
 	}
 
-	public void resolve(Expr expr, int depth) {
-		this.locals.put(expr, depth);
-	}
-
-	public void executeBlock(List<Stmt> statements, Environment environment) {
-		Environment previous = this.environment;
+	// runs the body of a function whose receiver and arguments were pushed from `frame` on
+	Completion executeFunction(Stmt.Function function, Cell[] upvalues, int frame) {
+		Cell[] previous = this.upvalues;
+		int previousFrame = this.frame;
 
 		try {
-			this.environment = environment;
+			this.upvalues = upvalues;
+			this.frame = frame;
+			this.reserve(frame + function.frameSize);
 
-			for (Stmt statement : statements) {
-				this.execute(statement);
+			// the receiver and parameters closures capture are passed like any others, then put in cells
+			for (int slot : function.capturedParams) {
+				this.stack[frame + slot] = this.newCell(frame + slot);
 			}
+
+			return this.executeStatements(function.body);
 		} finally {
-			this.environment = previous;
+			this.upvalues = previous;
+			this.frame = previousFrame;
+			this.top = frame;
+		}
+	}
+
+	// the upvalues of a closure over `function` created in the running frame, see `Resolver.resolveUpvalue`
+	private Cell[] capture(Stmt.Function function) {
+		Cell[] upvalues = new Cell[function.upvalues.length];
+
+		for (int i = 0; i < upvalues.length; i += 1) {
+			int index = function.upvalues[i];
+			upvalues[i] = function.upvaluesAreLocal[i] ? (Cell)this.stack[this.frame + index] : this.upvalues[index];
+		}
+
+		return upvalues;
+	}
+
+	// a cell holding the value in a stack slot, still unboxed when it's a number
+	private Cell newCell(int index) {
+		Cell cell = new Cell(this.stack[index]);
+
+		if (cell.value == Interpreter.NUMBER) {
+			cell.number = this.numbers[index];
+		}
+
+		return cell;
+	}
+
+	// where the frame of the next call starts, its receiver and arguments are `push`ed
+	int nextFrame() {
+		return this.top;
+	}
+
+	// a value being evaluated, `Interpreter.NUMBER` is pushed with the number it left
+	void push(Object value) {
+		if (this.top == this.stack.length) {
+			this.growStack(this.top + 1);
+		}
+
+		this.store(this.top, value);
+		this.top += 1;
+	}
+
+	// takes the receiver and arguments pushed from `frame` on off the stack again, boxed for compiled code
+	Object[] popArguments(int frame) {
+		Object[] arguments = new Object[this.top - frame];
+
+		for (int i = 0; i < arguments.length; i += 1) {
+			arguments[i] = this.valueAt(frame + i);
+		}
+
+		this.top = frame;
+		return arguments;
+	}
+
+	// a stack slot as everything but the `Interpreter` sees it
+	Object valueAt(int index) {
+		Object value = this.stack[index];
+
+		if (value == Interpreter.NUMBER) {
+			return this.numbers[index];
+		}
+
+		return value;
+	}
+
+	// the boxed value of a local in the running frame, for compiled loops
+	Object frameAt(int slot) {
+		return this.valueAt(this.frame + slot);
+	}
+
+	void assignFrame(int slot, Object value) {
+		this.stack[this.frame + slot] = value;
+	}
+
+	// the cell of a captured local in the running frame, for compiled loops
+	Cell cellAt(int slot) {
+		return (Cell)this.stack[this.frame + slot];
+	}
+
+	// claims the slots up to `end` for the locals of the running frame. an inlined call declares some while the
+	// arguments of an enclosing call are being pushed, those have to go past all of them
+	private void reserve(int end) {
+		if (end > this.top) {
+			if (end > this.stack.length) {
+				this.growStack(end);
+			}
+
+			this.top = end;
+		}
+	}
+
+	// a local declared in the running frame, slots past `top` are claimed for it
+	private void defineFrame(int slot, Object value) {
+		int index = this.frame + slot;
+
+		if (index >= this.top) {
+			if (index >= this.stack.length) {
+				this.growStack(index + 1);
+			}
+
+			this.top = index + 1;
 		}
+
+		this.store(index, value);
+	}
+
+	private void store(int index, Object value) {
+		if (value == Interpreter.NUMBER) {
+			this.numbers[index] = this.number;
+		}
+
+		this.stack[index] = value;
+	}
+
+	private void growStack(int minimum) {
+		int capacity = Math.max(this.stack.length * 2, minimum);
+		this.stack = Arrays.copyOf(this.stack, capacity);
+		this.numbers = Arrays.copyOf(this.numbers, capacity);
+	}
+
+	private Completion executeStatements(List<Stmt> statements) {
+		// indexed, an iterator per block is garbage the JIT can't always remove in this recursive code
+		for (int i = 0; i < statements.size(); i += 1) {
+			if (this.execute(statements.get(i)) == Completion.RETURN) {
+				return Completion.RETURN;
+			}
+		}
+
+		return Completion.NORMAL;
 	}
 
 	@Override
 	public Object visitBinaryExpr(Expr.Binary expr) {
 		Object left = this.evaluate(expr.left);
+		double leftNumber = this.number;
 		Object right = this.evaluate(expr.right);
+		double rightNumber = this.number;
 
-		switch (expr.operator.type) {
-			case MINUS:
-				this.checkNumberOperands(expr.operator, left, right);
-				return (double)left - (double)right;
-			case SLASH:
-				this.checkNumberOperands(expr.operator, left, right);
-				return (double)left / (double)right;
-			case STAR:
-				this.checkNumberOperands(expr.operator, left, right);
-				return (double)left * (double)right;
-			case PLUS:
-				if (left instanceof Double && right instanceof Double) {
-					return (double)left + (double)right;
-				} else if (left instanceof String && right instanceof String) {
-					return left + (String)right;
-				} else {
-					throw new RuntimeError(expr.operator, "Operands must be two numbers, or two strings");
-				}
-			case GREATER:
-				this.checkNumberOperands(expr.operator, left, right);
-				return (double)left > (double)right;
-			case GREATER_EQUAL:
-				this.checkNumberOperands(expr.operator, left, right);
-				return (double)left >= (double)right;
-			case LESS:
-				this.checkNumberOperands(expr.operator, left, right);
-				return (double)left < (double)right;
-			case LESS_EQUAL:
-				this.checkNumberOperands(expr.operator, left, right);
-				return (double)left <= (double)right;
-			case EQUAL:
-				return this.isEqual(left, right);
-			case BANG_EQUAL:
-				return !this.isEqual(left, right);
-		}
-
-		return null;
+		if (left == Interpreter.NUMBER && right == Interpreter.NUMBER) {
+			return expr.node.executeNumbers(this, expr, leftNumber, rightNumber);
+		}
+
+		return this.unbox(expr.node.execute(expr, this.box(left, leftNumber), this.box(right, rightNumber)));
 	}
 
 	@Override
 	public Object visitCallExpr(Expr.Call expr) {
-		Object callee = this.evaluate(expr.callee);
+		Object callee;
+		// `object.method(...)` passes the object along as the receiver instead of binding the method to it first
+		LoxInstance receiver = null;
+
+		if (expr.callee instanceof Expr.Get) {
+			Expr.Get get = (Expr.Get)expr.callee;
+			Object object = this.evaluate(get.object);
+
+			if (!(object instanceof LoxInstance)) {
+				throw new RuntimeError(get.name, "Only instances have properties.");
+			}
+
+			callee = ((LoxInstance)object).property(get);
 
-		List<Object> arguments = new ArrayList<>();
-		for (Expr argument : expr.arguments) {
-			arguments.add(evaluate(argument));
+			if (callee instanceof LoxFunction && ((LoxFunction)callee).isUnboundMethod()) {
+				receiver = (LoxInstance)object;
+			}
+		} else {
+			callee = this.evaluate(expr.callee);
 		}
 
+		if (callee instanceof LoxFunction) {
+			LoxFunction function = (LoxFunction)callee;
+
+			if (receiver == null) {
+				receiver = function.receiver;
+			}
+
+			// compiled code takes the receiver of a method as its first argument
+			if (function.isCompiled()) {
+				int offset = function.declaration.isMethod ? 1 : 0;
+				Object[] arguments = new Object[offset + expr.arguments.size()];
+
+				if (offset == 1) {
+					arguments[0] = receiver;
+				}
+
+				for (int i = 0; i < expr.arguments.size(); i += 1) {
+					arguments[offset + i] = this.box(this.evaluate(expr.arguments.get(i)));
+				}
+
+				this.checkCall(expr, function, expr.arguments.size());
+				return this.unbox(function.invoke(this, arguments));
+			}
+
+			// arguments of an interpreted function are evaluated right into its frame, leaving numbers unboxed
+			int frame = this.top;
+
+			if (function.declaration.isMethod) {
+				this.push(receiver);
+			}
+
+			for (int i = 0; i < expr.arguments.size(); i += 1) {
+				this.push(this.evaluate(expr.arguments.get(i)));
+			}
+
+			this.checkCall(expr, function, expr.arguments.size());
+			return this.unbox(function.call(this, frame));
+		}
+
+		// arguments are boxed, they leave the interpreter
+		switch (expr.arguments.size()) {
+			case 0:
+				return this.unbox(this.checkCall(expr, callee, 0).call0(this));
+			case 1: {
+				Object first = this.box(this.evaluate(expr.arguments.get(0)));
+				return this.unbox(this.checkCall(expr, callee, 1).call1(this, first));
+			}
+			case 2: {
+				Object first = this.box(this.evaluate(expr.arguments.get(0)));
+				Object second = this.box(this.evaluate(expr.arguments.get(1)));
+				return this.unbox(this.checkCall(expr, callee, 2).call2(this, first, second));
+			}
+			case 3: {
+				Object first = this.box(this.evaluate(expr.arguments.get(0)));
+				Object second = this.box(this.evaluate(expr.arguments.get(1)));
+				Object third = this.box(this.evaluate(expr.arguments.get(2)));
+				return this.unbox(this.checkCall(expr, callee, 3).call3(this, first, second, third));
+			}
+			default: {
+				Object[] arguments = new Object[expr.arguments.size()];
+				for (int i = 0; i < arguments.length; i += 1) {
+					arguments[i] = this.box(this.evaluate(expr.arguments.get(i)));
+				}
+
+				return this.unbox(this.checkCall(expr, callee, arguments.length).call(this, arguments));
+			}
+		}
+	}
+
+	// only checked once the arguments are evaluated
+	private LoxCallable checkCall(Expr.Call expr, Object callee, int count) {
 		if (!(callee instanceof LoxCallable)) {
 			throw new RuntimeError(expr.paren, "Can only call functions and classes.");
 		}
 
 		LoxCallable function = (LoxCallable)callee;
 
-		if (arguments.size() != function.arity()) {
-			throw new RuntimeError(expr.paren, "Expected " + function.arity() + " arguments but got " + arguments.size() + ".");
+		if (count != function.arity()) {
+			throw new RuntimeError(expr.paren, "Expected " + function.arity() + " arguments but got " + count + ".");
 		}
 
-		return function.call(this, arguments);
+		return function;
+	}
+
+	@Override
+	public Object visitConditionalExpr(Expr.Conditional expr) {
+		if (Interpreter.isTruthy(this.evaluate(expr.condition))) {
+			return this.evaluate(expr.thenBranch);
+		}
+
+		return this.evaluate(expr.elseBranch);
 	}
 
 	@Override
@@ -132,7 +341,7 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 		Object object = this.evaluate(expr.object);
 
 		if (object instanceof LoxInstance) {
-			return ((LoxInstance)object).get(expr.name);
+			return this.unbox(((LoxInstance)object).get(expr));
 		}
 
 		throw new RuntimeError(expr.name, "Only instances have properties.");
@@ -143,23 +352,26 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 		return this.evaluate(expr.expression);
 	}
 
+	@Override
+	public Object visitLetExpr(Expr.Let expr) {
+		for (int i = 0; i < expr.bindings.size(); i += 1) {
+			this.execute(expr.bindings.get(i));
+		}
+
+		return this.evaluate(expr.body);
+	}
+
 	@Override
 	public Object visitLiteralExpr(Expr.Literal expr) {
-		return expr.value;
+		return this.unbox(expr.value);
 	}
 
 	@Override
 	public Object visitLogicalExpr(Expr.Logical expr) {
 		Object left = this.evaluate(expr.left);
 
-		if (expr.operator.type == TokenType.OR) {
-			if (this.isTruthy(left)) {
-				return left;
-			}
-		} else {
-			if (!this.isTruthy(left)) {
-				return left;
-			}
+		if (expr.node.shortCircuits(expr, left)) {
+			return left;
 		}
 
 		return this.evaluate(expr.right);
@@ -174,16 +386,16 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 		}
 
 		Object value = this.evaluate(expr.value);
-		((LoxInstance)object).set(expr.name, value);
+		((LoxInstance)object).set(expr, this.box(value));
 		return value;
 	}
 
 	@Override
 	public Object visitSuperExpr(Expr.Super expr) {
-		int distance = this.locals.get(expr);
-		LoxClass superclass = (LoxClass)this.environment.getAt(distance, "super");
-		LoxInstance object = (LoxInstance)this.environment.getAt(distance - 1, "this");
-		LoxFunction method = superclass.findMethod(expr.method.lexeme);
+		// methods always capture "super"
+		LoxClass superclass = (LoxClass)this.upvalues[expr.slot].value;
+		LoxInstance object = (LoxInstance)this.evaluate(expr.receiver);
+		LoxFunction method = superclass.findMethod(expr.method.symbol);
 
 		if (method == null) {
 			throw new RuntimeError(expr.method, "Undefined property \"" + expr.method.lexeme + "\".");
@@ -194,32 +406,35 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
 	@Override
 	public Object visitThisExpr(Expr.This expr) {
-		return this.lookupVariable(expr.keyword, expr);
+		switch (expr.access) {
+			case FRAME:
+				return this.stack[this.frame + expr.slot];
+			case CELL:
+				return ((Cell)this.stack[this.frame + expr.slot]).value;
+			default:
+				return this.upvalues[expr.slot].value;
+		}
 	}
 
 	@Override
 	public Object visitUnaryExpr(Expr.Unary expr) {
 		Object right = this.evaluate(expr.right);
 
-		switch (expr.operator.type) {
-			case BANG:
-				return !this.isTruthy(right);
-			case MINUS:
-				this.checkNumberOperand(expr.operator, right);
-				return -(double)right;
+		if (right == Interpreter.NUMBER) {
+			return expr.node.executeNumber(this, expr, this.number);
 		}
 
-		return null;
+		return expr.node.execute(expr, right);
 	}
 
 	@Override
-	public Void visitBlockStmt(Stmt.Block stmt) {
-		this.executeBlock(stmt.statements, new Environment(this.environment));
-		return null;
+	public Completion visitBlockStmt(Stmt.Block stmt) {
+		// the locals of a block are in the frame of the function around it
+		return this.executeStatements(stmt.statements);
 	}
 
 	@Override
-	public Void visitClassStmt(Stmt.Class stmt) {
+	public Completion visitClassStmt(Stmt.Class stmt) {
 		Object superclass = null;
 		if (stmt.superclass != null) {
 			superclass = this.evaluate(stmt.superclass);
@@ -228,101 +443,190 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 			}
 		}
 
-		this.environment.define(stmt.name.lexeme, null);
+		this.declare(stmt.access, stmt.slot);
 
 		if (stmt.superclass != null) {
-			this.environment = new Environment(this.environment);
-			this.environment.define("super", superclass);
+			this.defineFrame(stmt.superSlot, new Cell(superclass));
 		}
 
-		Map<String, LoxFunction> methods = new HashMap<>();
+		Map<Symbol, LoxFunction> methods = new HashMap<>();
 		for (Stmt.Function method : stmt.methods) {
-			LoxFunction function = new LoxFunction(method, this.environment, method.name.lexeme.equals("init"));
-			methods.put(method.name.lexeme, function);
+			LoxFunction function = new LoxFunction(method, this.capture(method), method.name.symbol == Symbol.INIT);
+			methods.put(method.name.symbol, function);
 		}
 
 		LoxClass loxClass = new LoxClass(stmt.name.lexeme, (LoxClass)superclass, methods);
-
-		if (superclass != null) {
-			this.environment = this.environment.enclosing;
-		}
-
-		this.environment.assign(stmt.name, loxClass);
-		return null;
+		this.define(stmt.access, stmt.slot, loxClass);
+		return Completion.NORMAL;
 	}
 
 	@Override
-	public Void visitExpressionStmt(Stmt.Expression stmt) {
+	public Completion visitExpressionStmt(Stmt.Expression stmt) {
 		this.evaluate(stmt.expression);
-		return null;
+		return Completion.NORMAL;
 	}
 
 	@Override
-	public Void visitFunctionStmt(Stmt.Function stmt) {
-		LoxFunction function = new LoxFunction(stmt, this.environment, false);
-		this.environment.define(stmt.name.lexeme, function);
-		return null;
+	public Completion visitFunctionStmt(Stmt.Function stmt) {
+		this.declare(stmt.access, stmt.slot);
+		LoxFunction function = new LoxFunction(stmt, this.capture(stmt), false);
+		this.define(stmt.access, stmt.slot, function);
+		return Completion.NORMAL;
 	}
 
 	@Override
-	public Void visitIfStmt(Stmt.If stmt) {
-		if (this.isTruthy(this.evaluate(stmt.condition))) {
-			this.execute(stmt.thenBranch);
+	public Completion visitIfStmt(Stmt.If stmt) {
+		if (Interpreter.isTruthy(this.evaluate(stmt.condition))) {
+			return this.execute(stmt.thenBranch);
 		} else if (stmt.elseBranch != null) {
-			this.execute(stmt.elseBranch);
+			return this.execute(stmt.elseBranch);
 		}
-		return null;
+		return Completion.NORMAL;
 	}
 
 	@Override
-	public Void visitPrintStmt(Stmt.Print stmt) {
-		Object value = this.evaluate(stmt.expression);
-		System.out.println(this.stringify(value));
-		return null;
+	public Completion visitPrintStmt(Stmt.Print stmt) {
+		Object value = this.box(this.evaluate(stmt.expression));
+		System.out.println(Interpreter.stringify(value));
+		return Completion.NORMAL;
 	}
 
 	@Override
-	public Void visitReturnStmt(Stmt.Return stmt) {
+	public Completion visitReturnStmt(Stmt.Return stmt) {
 		Object value = null;
 		if (stmt.value != null) {
 			value = this.evaluate(stmt.value);
 		}
 
-		throw new Return(value);
+		this.returnValue = value;
+		return Completion.RETURN;
 	}
 
 	@Override
-	public Void visitVarStmt(Stmt.Var stmt) {
+	public Completion visitVarStmt(Stmt.Var stmt) {
 		Object value = null;
 		if (stmt.initializer != null) {
 			value = this.evaluate(stmt.initializer);
 		}
 
-		this.environment.define(stmt.name.lexeme, value);
-		return null;
+		switch (stmt.access) {
+			case FRAME:
+				this.defineFrame(stmt.slot, value);
+				break;
+			case CELL: {
+				// a new cell each time, closures created on earlier iterations of a loop keep the one they captured
+				Cell cell = new Cell(null);
+				this.store(cell, value);
+				this.defineFrame(stmt.slot, cell);
+				break;
+			}
+			default:
+				this.globals.define(stmt.slot, this.box(value));
+		}
+		return Completion.NORMAL;
 	}
 
 	@Override
-	public Void visitWhileStmt(Stmt.While stmt) {
-		while (this.isTruthy(this.evaluate(stmt.condition))) {
-			this.execute(stmt.body);
+	public Completion visitWhileStmt(Stmt.While stmt) {
+		if (stmt.compiled != null) {
+			return this.runCompiled(stmt);
 		}
 
-		return null;
+		while (Interpreter.isTruthy(this.evaluate(stmt.condition))) {
+			if (this.execute(stmt.body) == Completion.RETURN) {
+				return Completion.RETURN;
+			}
+
+			// back-edges also make the next call of the enclosing function compiled
+			if (stmt.function != null) {
+				stmt.function.hotness += 1;
+			}
+
+			// a loop that stays hot runs its remaining iterations as compiled code
+			if (Lox.jitThreshold >= 0 && !stmt.uncompilable) {
+				stmt.hotness += 1;
+
+				if (stmt.hotness > Lox.jitThreshold) {
+					this.tierUp(stmt);
+
+					if (stmt.compiled != null) {
+						return this.runCompiled(stmt);
+					}
+				}
+			}
+		}
+
+		return Completion.NORMAL;
+	}
+
+	// a compiled loop finishes like the statement it was compiled from, see `JitCompiler.compileLoop`
+	private Completion runCompiled(Stmt.While stmt) {
+		return (Completion)stmt.compiled.call(this, this.upvalues, null);
+	}
+
+	private void tierUp(Stmt.While stmt) {
+		stmt.compiled = JitCompiler.compileLoop(stmt);
+		stmt.uncompilable = stmt.compiled == null;
+
+		if (Lox.traceTiers) {
+			String function = stmt.function != null ? stmt.function.name.lexeme : "top level code";
+			String tier = stmt.compiled != null ? "compiled" : "stays interpreted";
+			System.err.println("[tier] loop in " + function + " " + tier + " after " + stmt.hotness + " back-edges");
+		}
 	}
 
 	@Override
 	public Object visitVariableExpr(Expr.Variable expr) {
-		return this.lookupVariable(expr.name, expr);
+		switch (expr.access) {
+			case FRAME: {
+				int index = this.frame + expr.slot;
+				Object value = this.stack[index];
+
+				if (value == Interpreter.NUMBER) {
+					this.number = this.numbers[index];
+					return value;
+				}
+
+				return this.unbox(value);
+			}
+			case CELL:
+				return this.load((Cell)this.stack[this.frame + expr.slot]);
+			case UPVALUE:
+				return this.load(this.upvalues[expr.slot]);
+			default:
+				return this.unbox(this.globals.get(expr.name, expr.slot));
+		}
 	}
 
-	private Object lookupVariable(Token name, Expr expr) {
-		Integer distance = this.locals.get(expr);
+	private Object load(Cell cell) {
+		Object value = cell.value;
 
-		if (distance != null) {
-			return this.environment.getAt(distance, name.lexeme);
-		} else {
-			return this.globals.get(name);
+		if (value == Interpreter.NUMBER) {
+			this.number = cell.number;
+			return value;
+		}
+
+		return this.unbox(value);
+	}
+
+	// a function or class closures capture can refer to itself, so its cell is made before the closures over it
+	private void declare(Access access, int slot) {
+		if (access == Access.CELL) {
+			this.defineFrame(slot, new Cell(null));
+		}
+	}
+
+	// where the `Resolver` put the declaration of a function or class, after `declare`
+	private void define(Access access, int slot, Object value) {
+		switch (access) {
+			case FRAME:
+				this.defineFrame(slot, value);
+				break;
+			case CELL:
+				((Cell)this.stack[this.frame + slot]).value = value;
+				break;
+			default:
+				this.globals.define(slot, value);
 		}
 	}
 
@@ -330,37 +634,63 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 	public Object visitAssignExpr(Expr.Assign expr) {
 		Object value = this.evaluate(expr.value);
 
-		Integer distance = this.locals.get(expr);
-		if (distance != null) {
-			this.environment.assignAt(distance, expr.name, value);
-		} else {
-			this.globals.assign(expr.name, value);
+		switch (expr.access) {
+			case FRAME:
+				this.store(this.frame + expr.slot, value);
+				break;
+			case CELL:
+				this.store((Cell)this.stack[this.frame + expr.slot], value);
+				break;
+			case UPVALUE:
+				this.store(this.upvalues[expr.slot], value);
+				break;
+			default:
+				this.globals.assign(expr.name, expr.slot, this.box(value));
 		}
 
-		return 0;
+		return value;
 	}
 
-	private void checkNumberOperand(Token operator, Object operand) {
-		if (operand instanceof Double) {
-			return;
-		} else {
-			throw new RuntimeError(operator, "Operand must be a number.");
+	private void store(Cell cell, Object value) {
+		if (value == Interpreter.NUMBER) {
+			cell.number = this.number;
 		}
-	}
 
-	private void checkNumberOperands(Token operator, Object left, Object right) {
-		if (left instanceof Double && right instanceof Double) {
-			return;
-		} else {
-			throw new RuntimeError(operator, "Operands must be a number.");
-		}
+		cell.value = value;
 	}
 
 	private Object evaluate(Expr expr) {
 		return expr.accept(this);
 	}
 
-	private boolean isTruthy(Object object) {
+	// the result of an evaluation that stands for `number`
+	Object number(double number) {
+		this.number = number;
+		return Interpreter.NUMBER;
+	}
+
+	// numbers that come back boxed, e.g. from fields, globals and calls, are unboxed again to evaluate them
+	Object unbox(Object value) {
+		if (value instanceof Double) {
+			return this.number((double)value);
+		}
+
+		return value;
+	}
+
+	Object box(Object value) {
+		return this.box(value, this.number);
+	}
+
+	private Object box(Object value, double number) {
+		if (value == Interpreter.NUMBER) {
+			return number;
+		}
+
+		return value;
+	}
+
+	static boolean isTruthy(Object object) {
 		if (object == null) {
 			return false;
 		} else if (object instanceof Boolean) {
@@ -370,7 +700,7 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 		}
 	}
 
-	private boolean isEqual(Object a, Object b) {
+	static boolean isEqual(Object a, Object b) {
 		if (a == null && b == null) {
 			return true;
 		} else if (a == null) {
@@ -380,7 +710,7 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 		}
 	}
 
-	private String stringify(Object object) {
+	static String stringify(Object object) {
 		if (object == null) {
 			return "nil";
 		}
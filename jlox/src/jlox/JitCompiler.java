@@ -0,0 +1,600 @@
+package jlox;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// turns the body of a `Stmt.Function` into a hidden class implementing `CompiledFunction`, so the JVM can optimize
+// Lox code like any other method. locals of the function live in JVM locals, anything it closes over is still read
+// from the `Cell`s it captured and calls go through `LoxCallable` so compiled and interpreted functions mix freely.
+// a hot `Stmt.While` can be compiled on its own too, it then gets the upvalues of the function it runs in, and the
+// locals declared around it stay in the `Interpreter`'s frame
+public class JitCompiler implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+	private static final String OBJECT = "java/lang/Object";
+	private static final String TOKEN = "jlox/Token";
+	private static final String CELL = "jlox/Cell";
+	private static final String RUNTIME = "jlox/JitRuntime";
+	private static final String BINARY_DESCRIPTOR = "(Ljava/lang/Object;Ljava/lang/Object;Ljlox/Token;)Ljava/lang/Object;";
+
+	// JVM locals of `CompiledFunction.call`, the function's own variables come after these
+	private static final int INTERPRETER = 1;
+	private static final int UPVALUES = 2;
+	private static final int ARGUMENTS = 3;
+	private static final int CONSTANTS = 4;
+
+	// the function uses something we only know how to interpret
+	private static class Bailout extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		public Bailout() {
+			super(null, null, false, false);
+		}
+	}
+
+	private final ClassFile classFile = new ClassFile();
+	private ClassFile.Code code;
+	private final boolean isInitializer;
+	// compiling a lone loop, whose returns have to unwind the interpreted function around it
+	private final boolean isLoop;
+
+	// tokens and literals, handed to the compiled class when it's constructed
+	private final List<Object> constants = new ArrayList<>();
+	private final Map<Object, Integer> constantIndices = new HashMap<>();
+
+	// JVM local of every frame slot declared in the compiled code, -1 for the others
+	private final List<Integer> locals = new ArrayList<>();
+
+	private JitCompiler(boolean isInitializer, boolean isLoop) {
+		this.isInitializer = isInitializer;
+		this.isLoop = isLoop;
+	}
+
+	// `null` when the function can't be compiled, it should keep being interpreted then
+	public static CompiledFunction compile(Stmt.Function function, boolean isInitializer) {
+		JitCompiler compiler = new JitCompiler(isInitializer, false);
+
+		try {
+			// a method takes its receiver as the first argument, see `LoxFunction.invoke`
+			int parameters = function.params.size() + (function.isMethod ? 1 : 0);
+			byte[] bytes = compiler.compileClass("jlox/Compiled_" + function.name.lexeme, parameters, function.body);
+			return compiler.load(bytes, function.name.lexeme);
+		} catch (Bailout | ClassFile.TooLarge e) {
+			return null;
+		}
+	}
+
+	// the compiled loop is called without arguments, with the upvalues of the function running the loop, and returns
+	// how it finished like a statement the `Interpreter` runs: `Completion.NORMAL` once it ends, or `Completion.RETURN`
+	// with the value left in `Interpreter.returnValue` when it returned from the function around it
+	public static CompiledFunction compileLoop(Stmt.While loop) {
+		JitCompiler compiler = new JitCompiler(false, true);
+		String name = loop.function != null ? loop.function.name.lexeme : "script";
+
+		try {
+			byte[] bytes = compiler.compileClass("jlox/CompiledLoop_" + name, 0, List.of(loop));
+			return compiler.load(bytes, name);
+		} catch (Bailout | ClassFile.TooLarge e) {
+			return null;
+		}
+	}
+
+	private CompiledFunction load(byte[] bytes, String name) {
+		try {
+			MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(bytes, true);
+			MethodHandle constructor = lookup.findConstructor(
+					lookup.lookupClass(),
+					MethodType.methodType(void.class, Object[].class)
+			);
+			return (CompiledFunction)constructor.invoke(this.constants.toArray());
+		} catch (Throwable e) {
+			// a class that doesn't load is a bug in the compiler, not in the script
+			throw new IllegalStateException("Couldn't load compiled code for " + name + ".", e);
+		}
+	}
+
+	private byte[] compileClass(String className, int parameters, List<Stmt> body) {
+		this.classFile.field(ClassFile.ACC_PRIVATE | ClassFile.ACC_FINAL, "constants", "[Ljava/lang/Object;");
+
+		ClassFile.Code constructor = this.classFile.method(ClassFile.ACC_PUBLIC, "<init>", "([Ljava/lang/Object;)V");
+		constructor.aload(0);
+		constructor.invokespecial(JitCompiler.OBJECT, "<init>", "()V");
+		constructor.aload(0);
+		constructor.aload(1);
+		constructor.putfield(className, "constants", "[Ljava/lang/Object;");
+		constructor.vreturn();
+		constructor.end();
+
+		this.code = this.classFile.method(
+				ClassFile.ACC_PUBLIC,
+				"call",
+				"(Ljlox/Interpreter;[Ljlox/Cell;[Ljava/lang/Object;)Ljava/lang/Object;"
+		);
+
+		this.code.aload(0);
+		this.code.getfield(className, "constants", "[Ljava/lang/Object;");
+		this.code.astore(JitCompiler.CONSTANTS);
+
+		// parameters are the first slots of the function's frame
+		for (int i = 0; i < parameters; i += 1) {
+			this.code.aload(JitCompiler.ARGUMENTS);
+			this.code.iconst(i);
+			this.code.aaload();
+			this.declare(i);
+		}
+
+		for (Stmt statement : body) {
+			this.compile(statement);
+		}
+
+		if (this.isLoop) {
+			this.code.getstatic("jlox/Completion", "NORMAL", "Ljlox/Completion;");
+			this.code.areturn();
+		} else {
+			this.code.aconstNull();
+			this.emitReturn();
+		}
+
+		this.code.end();
+
+		return this.classFile.toByteArray(
+				ClassFile.ACC_PUBLIC | ClassFile.ACC_FINAL | ClassFile.ACC_SUPER,
+				className,
+				JitCompiler.OBJECT,
+				"jlox/CompiledFunction"
+		);
+	}
+
+	private void compile(Stmt stmt) {
+		stmt.accept(this);
+	}
+
+	private void compile(Expr expr) {
+		expr.accept(this);
+	}
+
+	// stores the value on top of the stack into a new JVM local for the frame slot
+	private void declare(int slot) {
+		int local = this.code.newLocal();
+		this.code.astore(local);
+
+		while (this.locals.size() <= slot) {
+			this.locals.add(-1);
+		}
+
+		this.locals.set(slot, local);
+	}
+
+	// -1 when the slot belongs to the interpreted function around a compiled loop
+	private int localOf(int slot) {
+		return slot < this.locals.size() ? this.locals.get(slot) : -1;
+	}
+
+	private void emitConstant(Object value, String type) {
+		Integer index = this.constantIndices.get(value);
+
+		if (index == null) {
+			index = this.constants.size();
+			this.constants.add(value);
+			this.constantIndices.put(value, index);
+		}
+
+		this.code.aload(JitCompiler.CONSTANTS);
+		this.code.iconst(index);
+		this.code.aaload();
+
+		if (type != null) {
+			this.code.checkcast(type);
+		}
+	}
+
+	private void emitToken(Token token) {
+		this.emitConstant(token, JitCompiler.TOKEN);
+	}
+
+	private void emitRuntime(String name, String descriptor) {
+		this.code.invokestatic(JitCompiler.RUNTIME, name, descriptor);
+	}
+
+	// pushes the value of a resolved variable, see `Interpreter.visitVariableExpr`
+	private void emitLoad(Token name, Access access, int slot) {
+		switch (access) {
+			case FRAME:
+				if (this.localOf(slot) >= 0) {
+					this.code.aload(this.localOf(slot));
+				} else {
+					this.code.aload(JitCompiler.INTERPRETER);
+					this.code.iconst(slot);
+					this.code.invokevirtual("jlox/Interpreter", "frameAt", "(I)Ljava/lang/Object;");
+				}
+				break;
+			case CELL:
+				this.emitCell(slot);
+				this.code.invokevirtual(JitCompiler.CELL, "get", "()Ljava/lang/Object;");
+				break;
+			case UPVALUE:
+				this.code.aload(JitCompiler.UPVALUES);
+				this.code.iconst(slot);
+				this.code.aaload();
+				this.code.invokevirtual(JitCompiler.CELL, "get", "()Ljava/lang/Object;");
+				break;
+			default:
+				this.code.aload(JitCompiler.INTERPRETER);
+				this.code.getfield("jlox/Interpreter", "globals", "Ljlox/Environment;");
+				this.emitToken(name);
+				this.code.iconst(slot);
+				this.code.invokevirtual("jlox/Environment", "get", "(Ljlox/Token;I)Ljava/lang/Object;");
+		}
+	}
+
+	// pushes the cell of a captured local. only a loop can use one, in the frame of the interpreted function around it,
+	// a compiled function declaring any would also have to create the closure capturing it
+	private void emitCell(int slot) {
+		if (!this.isLoop) {
+			throw new Bailout();
+		}
+
+		this.code.aload(JitCompiler.INTERPRETER);
+		this.code.iconst(slot);
+		this.code.invokevirtual("jlox/Interpreter", "cellAt", "(I)Ljlox/Cell;");
+	}
+
+	private void emitReturn() {
+		if (this.isLoop) {
+			// left for `Interpreter.visitWhileStmt`, which returns it from the enclosing function
+			this.code.aload(JitCompiler.INTERPRETER);
+			this.emitRuntime("returnFromLoop", "(Ljava/lang/Object;Ljlox/Interpreter;)Ljlox/Completion;");
+			this.code.areturn();
+			return;
+		}
+
+		if (this.isInitializer) {
+			// initializers always return "this", the first slot of the function's frame
+			this.code.pop();
+			this.code.aload(this.localOf(0));
+		}
+
+		this.code.areturn();
+	}
+
+	private void emitTruthy() {
+		this.code.invokestatic("jlox/Interpreter", "isTruthy", "(Ljava/lang/Object;)Z");
+	}
+
+	@Override
+	public Void visitAssignExpr(Expr.Assign expr) {
+		switch (expr.access) {
+			case FRAME:
+				if (this.localOf(expr.slot) >= 0) {
+					this.compile(expr.value);
+					this.code.dup();
+					this.code.astore(this.localOf(expr.slot));
+				} else {
+					this.code.aload(JitCompiler.INTERPRETER);
+					this.code.iconst(expr.slot);
+					this.compile(expr.value);
+					this.emitRuntime("assignFrame", "(Ljlox/Interpreter;ILjava/lang/Object;)Ljava/lang/Object;");
+				}
+				break;
+			case CELL:
+				this.emitCell(expr.slot);
+				this.compile(expr.value);
+				this.emitRuntime("assignCell", "(Ljlox/Cell;Ljava/lang/Object;)Ljava/lang/Object;");
+				break;
+			case UPVALUE:
+				this.code.aload(JitCompiler.UPVALUES);
+				this.code.iconst(expr.slot);
+				this.code.aaload();
+				this.compile(expr.value);
+				this.emitRuntime("assignCell", "(Ljlox/Cell;Ljava/lang/Object;)Ljava/lang/Object;");
+				break;
+			default:
+				this.code.aload(JitCompiler.INTERPRETER);
+				this.code.getfield("jlox/Interpreter", "globals", "Ljlox/Environment;");
+				this.emitToken(expr.name);
+				this.code.iconst(expr.slot);
+				this.compile(expr.value);
+				this.emitRuntime("assignGlobal", "(Ljlox/Environment;Ljlox/Token;ILjava/lang/Object;)Ljava/lang/Object;");
+		}
+
+		return null;
+	}
+
+	@Override
+	public Void visitBinaryExpr(Expr.Binary expr) {
+		this.compile(expr.left);
+		this.compile(expr.right);
+
+		switch (expr.operator.type) {
+			case EQUAL_EQUAL -> this.emitRuntime("equal", "(Ljava/lang/Object;Ljava/lang/Object;)Ljava/lang/Object;");
+			case BANG_EQUAL -> this.emitRuntime("notEqual", "(Ljava/lang/Object;Ljava/lang/Object;)Ljava/lang/Object;");
+			default -> {
+				String name = switch (expr.operator.type) {
+					case PLUS -> "add";
+					case MINUS -> "subtract";
+					case STAR -> "multiply";
+					case SLASH -> "divide";
+					case GREATER -> "greater";
+					case GREATER_EQUAL -> "greaterEqual";
+					case LESS -> "less";
+					case LESS_EQUAL -> "lessEqual";
+					default -> throw new Bailout();
+				};
+
+				this.emitToken(expr.operator);
+				this.emitRuntime(name, JitCompiler.BINARY_DESCRIPTOR);
+			}
+		}
+
+		return null;
+	}
+
+	@Override
+	public Void visitCallExpr(Expr.Call expr) {
+		if (expr.callee instanceof Expr.Get) {
+			return this.compileInvoke(expr, (Expr.Get)expr.callee);
+		}
+
+		this.code.aload(JitCompiler.INTERPRETER);
+		this.compile(expr.callee);
+
+		this.code.iconst(expr.arguments.size());
+		this.code.anewarray(JitCompiler.OBJECT);
+		for (int i = 0; i < expr.arguments.size(); i += 1) {
+			this.code.dup();
+			this.code.iconst(i);
+			this.compile(expr.arguments.get(i));
+			this.code.aastore();
+		}
+
+		this.emitToken(expr.paren);
+		this.emitRuntime("call", "(Ljlox/Interpreter;Ljava/lang/Object;[Ljava/lang/Object;Ljlox/Token;)Ljava/lang/Object;");
+		return null;
+	}
+
+	// the object is passed along as the receiver, a method found on it isn't bound first. the first element of the
+	// arguments array is left for it
+	private Void compileInvoke(Expr.Call expr, Expr.Get callee) {
+		this.code.aload(JitCompiler.INTERPRETER);
+		this.compile(callee.object);
+		this.code.dup();
+		this.emitConstant(callee, "jlox/Expr$Get");
+		this.emitRuntime("property", "(Ljava/lang/Object;Ljlox/Expr$Get;)Ljava/lang/Object;");
+
+		this.code.iconst(expr.arguments.size() + 1);
+		this.code.anewarray(JitCompiler.OBJECT);
+		for (int i = 0; i < expr.arguments.size(); i += 1) {
+			this.code.dup();
+			this.code.iconst(i + 1);
+			this.compile(expr.arguments.get(i));
+			this.code.aastore();
+		}
+
+		this.emitToken(expr.paren);
+		this.emitRuntime(
+				"invoke",
+				"(Ljlox/Interpreter;Ljava/lang/Object;Ljava/lang/Object;[Ljava/lang/Object;Ljlox/Token;)Ljava/lang/Object;"
+		);
+		return null;
+	}
+
+	@Override
+	public Void visitConditionalExpr(Expr.Conditional expr) {
+		ClassFile.Label elseBranch = new ClassFile.Label();
+		ClassFile.Label end = new ClassFile.Label();
+
+		this.compile(expr.condition);
+		this.emitTruthy();
+		this.code.jump(ClassFile.Code.IFEQ, elseBranch);
+		this.compile(expr.thenBranch);
+		this.code.jump(ClassFile.Code.GOTO, end);
+
+		this.code.place(elseBranch);
+		this.compile(expr.elseBranch);
+		this.code.place(end);
+		return null;
+	}
+
+	@Override
+	public Void visitGetExpr(Expr.Get expr) {
+		this.compile(expr.object);
+		// the site itself, which holds the cache for the property
+		this.emitConstant(expr, "jlox/Expr$Get");
+		this.emitRuntime("get", "(Ljava/lang/Object;Ljlox/Expr$Get;)Ljava/lang/Object;");
+		return null;
+	}
+
+	@Override
+	public Void visitGroupingExpr(Expr.Grouping expr) {
+		this.compile(expr.expression);
+		return null;
+	}
+
+	// the bindings get JVM locals like any other local declared in the compiled code
+	@Override
+	public Void visitLetExpr(Expr.Let expr) {
+		for (Stmt.Var binding : expr.bindings) {
+			this.compile(binding);
+		}
+
+		this.compile(expr.body);
+		return null;
+	}
+
+	@Override
+	public Void visitLiteralExpr(Expr.Literal expr) {
+		if (expr.value == null) {
+			this.code.aconstNull();
+		} else if (expr.value instanceof Boolean) {
+			String name = (boolean)expr.value ? "TRUE" : "FALSE";
+			this.code.getstatic("java/lang/Boolean", name, "Ljava/lang/Boolean;");
+		} else {
+			this.emitConstant(expr.value, null);
+		}
+
+		return null;
+	}
+
+	@Override
+	public Void visitLogicalExpr(Expr.Logical expr) {
+		ClassFile.Label end = new ClassFile.Label();
+
+		this.compile(expr.left);
+		this.code.dup();
+		this.emitTruthy();
+		this.code.jump(expr.operator.type == TokenType.OR ? ClassFile.Code.IFNE : ClassFile.Code.IFEQ, end);
+		this.code.pop();
+		this.compile(expr.right);
+		this.code.place(end);
+		return null;
+	}
+
+	@Override
+	public Void visitSetExpr(Expr.Set expr) {
+		this.compile(expr.object);
+		this.emitToken(expr.name);
+		this.emitRuntime("checkFieldTarget", "(Ljava/lang/Object;Ljlox/Token;)Ljava/lang/Object;");
+		this.compile(expr.value);
+		this.emitConstant(expr, "jlox/Expr$Set");
+		this.emitRuntime("set", "(Ljava/lang/Object;Ljava/lang/Object;Ljlox/Expr$Set;)Ljava/lang/Object;");
+		return null;
+	}
+
+	@Override
+	public Void visitSuperExpr(Expr.Super expr) {
+		this.emitLoad(expr.keyword, expr.access, expr.slot);
+		this.compile(expr.receiver);
+		this.emitToken(expr.method);
+		this.emitRuntime("superMethod", JitCompiler.BINARY_DESCRIPTOR);
+		return null;
+	}
+
+	@Override
+	public Void visitThisExpr(Expr.This expr) {
+		this.emitLoad(expr.keyword, expr.access, expr.slot);
+		return null;
+	}
+
+	@Override
+	public Void visitUnaryExpr(Expr.Unary expr) {
+		this.compile(expr.right);
+
+		if (expr.operator.type == TokenType.BANG) {
+			this.emitRuntime("not", "(Ljava/lang/Object;)Ljava/lang/Object;");
+		} else {
+			this.emitToken(expr.operator);
+			this.emitRuntime("negate", "(Ljava/lang/Object;Ljlox/Token;)Ljava/lang/Object;");
+		}
+
+		return null;
+	}
+
+	@Override
+	public Void visitVariableExpr(Expr.Variable expr) {
+		this.emitLoad(expr.name, expr.access, expr.slot);
+		return null;
+	}
+
+	@Override
+	public Void visitBlockStmt(Stmt.Block stmt) {
+		for (Stmt statement : stmt.statements) {
+			this.compile(statement);
+		}
+
+		return null;
+	}
+
+	@Override
+	public Void visitClassStmt(Stmt.Class stmt) {
+		// methods would close over locals that only exist as JVM locals here
+		throw new Bailout();
+	}
+
+	@Override
+	public Void visitExpressionStmt(Stmt.Expression stmt) {
+		this.compile(stmt.expression);
+		this.code.pop();
+		return null;
+	}
+
+	@Override
+	public Void visitFunctionStmt(Stmt.Function stmt) {
+		// same as classes, a closure needs the cells of the locals it captures
+		throw new Bailout();
+	}
+
+	@Override
+	public Void visitIfStmt(Stmt.If stmt) {
+		ClassFile.Label elseBranch = new ClassFile.Label();
+		ClassFile.Label end = new ClassFile.Label();
+
+		this.compile(stmt.condition);
+		this.emitTruthy();
+		this.code.jump(ClassFile.Code.IFEQ, elseBranch);
+		this.compile(stmt.thenBranch);
+		this.code.jump(ClassFile.Code.GOTO, end);
+
+		this.code.place(elseBranch);
+		if (stmt.elseBranch != null) {
+			this.compile(stmt.elseBranch);
+		}
+
+		this.code.place(end);
+		return null;
+	}
+
+	@Override
+	public Void visitPrintStmt(Stmt.Print stmt) {
+		this.compile(stmt.expression);
+		this.emitRuntime("print", "(Ljava/lang/Object;)V");
+		return null;
+	}
+
+	@Override
+	public Void visitReturnStmt(Stmt.Return stmt) {
+		if (stmt.value != null) {
+			this.compile(stmt.value);
+		} else {
+			this.code.aconstNull();
+		}
+
+		this.emitReturn();
+		return null;
+	}
+
+	@Override
+	public Void visitVarStmt(Stmt.Var stmt) {
+		if (stmt.initializer != null) {
+			this.compile(stmt.initializer);
+		} else {
+			this.code.aconstNull();
+		}
+
+		if (stmt.access != Access.FRAME) {
+			throw new Bailout();
+		}
+
+		this.declare(stmt.slot);
+		return null;
+	}
+
+	@Override
+	public Void visitWhileStmt(Stmt.While stmt) {
+		ClassFile.Label start = new ClassFile.Label();
+		ClassFile.Label end = new ClassFile.Label();
+
+		this.code.place(start);
+		this.compile(stmt.condition);
+		this.emitTruthy();
+		this.code.jump(ClassFile.Code.IFEQ, end);
+		this.compile(stmt.body);
+		this.code.jump(ClassFile.Code.GOTO, start);
+
+		this.code.place(end);
+		return null;
+	}
+}
@@ -0,0 +1,175 @@
+package jlox;
+
+import java.util.Arrays;
+
+// the operations compiled code calls into, each behaves exactly like its visitor in the `Interpreter`
+final class JitRuntime {
+	private JitRuntime() {}
+
+	static Object add(Object left, Object right, Token operator) {
+		if (left instanceof Double && right instanceof Double) {
+			return (double)left + (double)right;
+		} else if (left instanceof String && right instanceof String) {
+			return left + (String)right;
+		} else {
+			throw new RuntimeError(operator, "Operands must be two numbers, or two strings");
+		}
+	}
+
+	static Object subtract(Object left, Object right, Token operator) {
+		JitRuntime.checkNumberOperands(operator, left, right);
+		return (double)left - (double)right;
+	}
+
+	static Object multiply(Object left, Object right, Token operator) {
+		JitRuntime.checkNumberOperands(operator, left, right);
+		return (double)left * (double)right;
+	}
+
+	static Object divide(Object left, Object right, Token operator) {
+		JitRuntime.checkNumberOperands(operator, left, right);
+		return (double)left / (double)right;
+	}
+
+	static Object greater(Object left, Object right, Token operator) {
+		JitRuntime.checkNumberOperands(operator, left, right);
+		return (double)left > (double)right;
+	}
+
+	static Object greaterEqual(Object left, Object right, Token operator) {
+		JitRuntime.checkNumberOperands(operator, left, right);
+		return (double)left >= (double)right;
+	}
+
+	static Object less(Object left, Object right, Token operator) {
+		JitRuntime.checkNumberOperands(operator, left, right);
+		return (double)left < (double)right;
+	}
+
+	static Object lessEqual(Object left, Object right, Token operator) {
+		JitRuntime.checkNumberOperands(operator, left, right);
+		return (double)left <= (double)right;
+	}
+
+	static Object equal(Object left, Object right) {
+		return Interpreter.isEqual(left, right);
+	}
+
+	static Object notEqual(Object left, Object right) {
+		return !Interpreter.isEqual(left, right);
+	}
+
+	static Object not(Object right) {
+		return !Interpreter.isTruthy(right);
+	}
+
+	static Object negate(Object right, Token operator) {
+		if (!(right instanceof Double)) {
+			throw new RuntimeError(operator, "Operand must be a number.");
+		}
+
+		return -(double)right;
+	}
+
+	static Object call(Interpreter interpreter, Object callee, Object[] arguments, Token paren) {
+		if (!(callee instanceof LoxCallable)) {
+			throw new RuntimeError(paren, "Can only call functions and classes.");
+		}
+
+		LoxCallable function = (LoxCallable)callee;
+
+		if (arguments.length != function.arity()) {
+			throw new RuntimeError(paren, "Expected " + function.arity() + " arguments but got " + arguments.length + ".");
+		}
+
+		return function.call(interpreter, arguments);
+	}
+
+	// the callee of `object.property(...)`, a method comes back unbound, see `invoke`
+	static Object property(Object object, Expr.Get site) {
+		if (object instanceof LoxInstance) {
+			return ((LoxInstance)object).property(site);
+		}
+
+		throw new RuntimeError(site.name, "Only instances have properties.");
+	}
+
+	// the first of `arguments` is free for the receiver, which an unbound method gets. any other callee, like a
+	// function kept in a field, is called with just the arguments after it
+	static Object invoke(Interpreter interpreter, Object receiver, Object callee, Object[] arguments, Token paren) {
+		if (callee instanceof LoxFunction && ((LoxFunction)callee).isUnboundMethod()) {
+			LoxFunction method = (LoxFunction)callee;
+
+			if (arguments.length - 1 != method.arity()) {
+				throw new RuntimeError(paren, "Expected " + method.arity() + " arguments but got " + (arguments.length - 1) + ".");
+			}
+
+			arguments[0] = receiver;
+			return method.invoke(interpreter, arguments);
+		}
+
+		return JitRuntime.call(interpreter, callee, Arrays.copyOfRange(arguments, 1, arguments.length), paren);
+	}
+
+	static Object get(Object object, Expr.Get site) {
+		if (object instanceof LoxInstance) {
+			return ((LoxInstance)object).get(site);
+		}
+
+		throw new RuntimeError(site.name, "Only instances have properties.");
+	}
+
+	// the object of a `Set` is checked before its value is evaluated
+	static Object checkFieldTarget(Object object, Token name) {
+		if (!(object instanceof LoxInstance)) {
+			throw new RuntimeError(name, "Only instances have fields");
+		}
+
+		return object;
+	}
+
+	static Object set(Object object, Object value, Expr.Set site) {
+		((LoxInstance)object).set(site, value);
+		return value;
+	}
+
+	static Object superMethod(Object superclass, Object object, Token method) {
+		LoxFunction function = ((LoxClass)superclass).findMethod(method.symbol);
+
+		if (function == null) {
+			throw new RuntimeError(method, "Undefined property \"" + method.lexeme + "\".");
+		}
+
+		return function.bind((LoxInstance)object);
+	}
+
+	static Object assignCell(Cell cell, Object value) {
+		cell.set(value);
+		return value;
+	}
+
+	static Object assignFrame(Interpreter interpreter, int slot, Object value) {
+		interpreter.assignFrame(slot, value);
+		return value;
+	}
+
+	static Object assignGlobal(Environment globals, Token name, int slot, Object value) {
+		globals.assign(name, slot, value);
+		return value;
+	}
+
+	static Completion returnFromLoop(Object value, Interpreter interpreter) {
+		interpreter.returnValue = interpreter.unbox(value);
+		return Completion.RETURN;
+	}
+
+	static void print(Object value) {
+		System.out.println(Interpreter.stringify(value));
+	}
+
+	private static void checkNumberOperands(Token operator, Object left, Object right) {
+		if (!(left instanceof Double && right instanceof Double)) {
+			throw new RuntimeError(operator, "Operands must be a number.");
+		}
+	}
+}
@@ -0,0 +1,63 @@
+package jlox;
+
+// decides whether an `Expr.Logical` short circuits on its left operand, rewritten per site like a `BinaryNode`
+abstract class LogicalNode {
+	public static final LogicalNode UNINITIALIZED = new Uninitialized();
+
+	// true when the left operand is the result and the right one isn't evaluated
+	abstract boolean shortCircuits(Expr.Logical site, Object left);
+
+	private static final class Uninitialized extends LogicalNode {
+		@Override
+		boolean shortCircuits(Expr.Logical site, Object left) {
+			if (left instanceof Boolean) {
+				site.node = site.operator.type == TokenType.OR ? BooleanOr.INSTANCE : BooleanAnd.INSTANCE;
+			} else {
+				site.node = Generic.INSTANCE;
+			}
+
+			return site.node.shortCircuits(site, left);
+		}
+	}
+
+	private static final class BooleanOr extends LogicalNode {
+		public static final LogicalNode INSTANCE = new BooleanOr();
+
+		@Override
+		boolean shortCircuits(Expr.Logical site, Object left) {
+			if (left instanceof Boolean) {
+				return (boolean)left;
+			}
+
+			site.node = Generic.INSTANCE;
+			return Generic.INSTANCE.shortCircuits(site, left);
+		}
+	}
+
+	private static final class BooleanAnd extends LogicalNode {
+		public static final LogicalNode INSTANCE = new BooleanAnd();
+
+		@Override
+		boolean shortCircuits(Expr.Logical site, Object left) {
+			if (left instanceof Boolean) {
+				return !(boolean)left;
+			}
+
+			site.node = Generic.INSTANCE;
+			return Generic.INSTANCE.shortCircuits(site, left);
+		}
+	}
+
+	private static final class Generic extends LogicalNode {
+		public static final LogicalNode INSTANCE = new Generic();
+
+		@Override
+		boolean shortCircuits(Expr.Logical site, Object left) {
+			if (site.operator.type == TokenType.OR) {
+				return Interpreter.isTruthy(left);
+			} else {
+				return !Interpreter.isTruthy(left);
+			}
+		}
+	}
+}
@@ -4,8 +4,6 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 
-import java.nio.charset.Charset;
-import java.nio.file.Files;
 import java.nio.file.Paths;
 
 import java.util.List;
@@ -15,22 +13,73 @@ public class Lox {
 	public static boolean hadRuntimeError = false;
 
 	private static final Interpreter interpreter = new Interpreter();
+	private static final ClosureInterpreter closureInterpreter = new ClosureInterpreter();
+	// compile the tree to lambdas before running it, see `ClosureInterpreter`
+	private static boolean useClosures = false;
+	// calls and loop back-edges after which a function is compiled to JVM bytecode by the `JitCompiler`, -1 never
+	// compiles and 0 compiles functions the first time they're called
+	static int jitThreshold = 1000;
+	// report functions moving between the interpreter and compiled code
+	static boolean traceTiers = false;
+	// replace calls to small functions with their body, see `Inliner`
+	private static boolean inline = false;
+	// scan files on all cores up front rather than streaming them, see `ParallelScanner`
+	private static boolean parallelScan = false;
 
 	public static void main(String[] args) throws IOException {
-		if (args.length > 1) {
-			System.out.println("Usage: jlox [script]");
-			System.exit(64);
-		} else if (args.length == 1) {
-			Lox.runFile(args[0]);
+		int first = 0;
+		while (first < args.length && args[first].startsWith("--")) {
+			switch (args[first]) {
+				case "--closures" -> Lox.useClosures = true;
+				case "--jit" -> Lox.jitThreshold = 0;
+				case "--no-jit" -> Lox.jitThreshold = -1;
+				case "--trace-tiers" -> Lox.traceTiers = true;
+				case "--inline" -> Lox.inline = true;
+				case "--parallel-scan" -> Lox.parallelScan = true;
+				default -> {
+					if (args[first].startsWith("--jit-threshold=")) {
+						Lox.jitThreshold = Lox.parseThreshold(args[first].substring("--jit-threshold=".length()));
+					} else {
+						Lox.usage();
+					}
+				}
+			}
+
+			first += 1;
+		}
+
+		if (args.length - first > 1) {
+			Lox.usage();
+		} else if (args.length - first == 1) {
+			Lox.runFile(args[first]);
 		} else {
 			Lox.runPrompt();
 		}
 	}
 
+	private static void usage() {
+		System.out.println("Usage: jlox [--closures] [--jit | --no-jit | --jit-threshold=<n>] [--trace-tiers] [--inline] [--parallel-scan] [script]");
+		System.exit(64);
+	}
+
+	private static int parseThreshold(String value) {
+		try {
+			return Math.max(Integer.parseInt(value), -1);
+		} catch (NumberFormatException e) {
+			Lox.usage();
+			return -1;
+		}
+	}
+
+	// the file is mapped rather than read, and scanned as the parser goes, see `MappedSource` and `Tokens`
 	private static void runFile(String path) throws IOException {
-		byte[] bytes = Files.readAllBytes(Paths.get(path));
+		MappedSource source = MappedSource.map(Paths.get(path));
 
-		Lox.run(new String(bytes, Charset.defaultCharset()));
+		if (Lox.parallelScan) {
+			Lox.run(new ParallelScanner(source).scanTokens());
+		} else {
+			Lox.run(new Scanner(source).streamTokens());
+		}
 
 		// https://www.freebsd.org/cgi/man.cgi?query=sysexits
 		// indicate an error in the exit code
@@ -44,6 +93,9 @@ public class Lox {
 	}
 
 	private static void runPrompt() throws IOException {
+		// a later line could declare a function again, after calls to it were inlined on earlier lines
+		Lox.inline = false;
+
 		InputStreamReader input = new InputStreamReader(System.in);
 		BufferedReader reader = new BufferedReader(input);
 
@@ -55,27 +107,35 @@ public class Lox {
 				break;
 			}
 
-			Lox.run(line);
+			Lox.run(new Scanner(line).scanTokens());
 			Lox.hadError = false;
 			Lox.hadRuntimeError = false;
 		}
 	}
 
-	private static void run(String source) {
-		Scanner scanner = new Scanner(source);
-		List<Token> tokens = scanner.scanTokens();
-
+	private static void run(Tokens tokens) {
 		Parser parser = new Parser(tokens);
 		List<Stmt> statements = parser.parse();
 
 		if (hadError) return;
 
-		Resolver resolver = new Resolver(Lox.interpreter);
+		statements = new ConstantFolder().fold(statements);
+
+		// folded first so negative numbers are literal arguments, and again for the constants that inlining exposed
+		if (Lox.inline) {
+			statements = new ConstantFolder().fold(new Inliner().inline(statements));
+		}
+
+		Resolver resolver = new Resolver();
 		resolver.resolve(statements);
 
 		if (Lox.hadError) return;
 
-		Lox.interpreter.interpret(statements);
+		if (Lox.useClosures) {
+			Lox.closureInterpreter.interpret(statements);
+		} else {
+			Lox.interpreter.interpret(statements, resolver.frameSize);
+		}
 		// System.out.println(new ASTPrinter().print(expression));
 	}
 
@@ -97,7 +157,11 @@ public class Lox {
 	}
 
 	static void runtimeError(RuntimeError error) {
-		System.err.println(error.getMessage() + "\n[line " + error.token.line + "]");
+		Lox.runtimeError(error.token.line, error.getMessage());
+	}
+
+	static void runtimeError(int line, String message) {
+		System.err.println(message + "\n[line " + line + "]");
 		Lox.hadRuntimeError = true;
 	}
 }
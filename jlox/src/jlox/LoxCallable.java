@@ -1,9 +1,28 @@
 package jlox;
 
-import java.util.List;
-
+// `call` takes any number of arguments, `call0` to `call3` are entry points for the common arities that callers use
+// so no argument array is allocated. implementations override the ones they can run without it
 public interface LoxCallable {
+	Object[] NO_ARGUMENTS = new Object[0];
+
 	int arity();
 
-	Object call(Interpreter interpreter, List<Object> arguments);
+	// `arguments` belongs to the caller, it's neither kept nor modified
+	Object call(Interpreter interpreter, Object[] arguments);
+
+	default Object call0(Interpreter interpreter) {
+		return this.call(interpreter, LoxCallable.NO_ARGUMENTS);
+	}
+
+	default Object call1(Interpreter interpreter, Object first) {
+		return this.call(interpreter, new Object[] {first});
+	}
+
+	default Object call2(Interpreter interpreter, Object first, Object second) {
+		return this.call(interpreter, new Object[] {first, second});
+	}
+
+	default Object call3(Interpreter interpreter, Object first, Object second, Object third) {
+		return this.call(interpreter, new Object[] {first, second, third});
+	}
 }
@@ -1,29 +1,32 @@
 package jlox;
 
-import java.util.List;
+import java.util.HashMap;
 import java.util.Map;
 
 public class LoxClass implements LoxCallable {
 	public final String name;
 	public final LoxClass superclass;
-	private final Map<String, LoxFunction> methods;
+	// flattened when the class is defined, inherited methods are copied in below the class's own
+	private final Map<Symbol, LoxFunction> methods = new HashMap<>();
+	// null when neither the class nor a superclass has one
+	private final LoxFunction initializer;
+	// the shape of new instances, which don't have fields yet
+	final Shape shape = new Shape(this);
 
-	public LoxClass(String name, LoxClass superclass, Map<String, LoxFunction> methods) {
+	public LoxClass(String name, LoxClass superclass, Map<Symbol, LoxFunction> methods) {
 		this.name = name;
 		this.superclass = superclass;
-		this.methods = methods;
-	}
-
-	public LoxFunction findMethod(String name) {
-		if (this.methods.containsKey(name)) {
-			return this.methods.get(name);
-		}
 
 		if (superclass != null) {
-			return superclass.findMethod(name);
+			this.methods.putAll(superclass.methods);
 		}
 
-		return null;
+		this.methods.putAll(methods);
+		this.initializer = this.methods.get(Symbol.INIT);
+	}
+
+	public LoxFunction findMethod(Symbol name) {
+		return this.methods.get(name);
 	}
 
 	@Override
@@ -31,21 +34,52 @@ public class LoxClass implements LoxCallable {
 		return this.name;
 	}
 
+	// the initializer is called with the new instance as its receiver, it's never bound, see `LoxFunction.initialize`
+	@Override
+	public Object call(Interpreter interpreter, Object[] arguments) {
+		LoxInstance instance = new LoxInstance(this);
+		if (this.initializer != null) {
+			this.initializer.initialize(interpreter, instance, arguments);
+		}
+
+		return instance;
+	}
+
 	@Override
-	public Object call(Interpreter interpreter, List<Object> arguments) {
+	public Object call0(Interpreter interpreter) {
 		LoxInstance instance = new LoxInstance(this);
-		LoxFunction initializer = this.findMethod("init");
-		if (initializer != null) {
-			initializer.bind(instance).call(interpreter, arguments);
+		if (this.initializer != null) {
+			this.initializer.initialize0(interpreter, instance);
 		}
 
 		return instance;
 	}
 
+	// a class only takes arguments when it has an initializer, `arity` makes sure of that
+	@Override
+	public Object call1(Interpreter interpreter, Object first) {
+		LoxInstance instance = new LoxInstance(this);
+		this.initializer.initialize1(interpreter, instance, first);
+		return instance;
+	}
+
+	@Override
+	public Object call2(Interpreter interpreter, Object first, Object second) {
+		LoxInstance instance = new LoxInstance(this);
+		this.initializer.initialize2(interpreter, instance, first, second);
+		return instance;
+	}
+
+	@Override
+	public Object call3(Interpreter interpreter, Object first, Object second, Object third) {
+		LoxInstance instance = new LoxInstance(this);
+		this.initializer.initialize3(interpreter, instance, first, second, third);
+		return instance;
+	}
+
 	@Override
 	public int arity() {
-		LoxFunction initializer = this.findMethod("init");
-		if (initializer == null) return 0;
-		return initializer.arity();
+		if (this.initializer == null) return 0;
+		return this.initializer.arity();
 	}
 }
@@ -1,23 +1,33 @@
 package jlox;
 
-import java.util.List;
-
 public class LoxFunction implements LoxCallable {
-	private final Stmt.Function declaration;
-	private final Environment closure;
+	protected final Stmt.Function declaration;
+	// the cells of the locals this closes over, see `Resolver.resolveUpvalue`
+	protected final Cell[] upvalues;
+	// a method's receiver goes in the first slot of its frame, ahead of the arguments. the methods in a class
+	// have none, they're only called with one passed along or bound to one, so an unbound method is never a value
+	protected final LoxInstance receiver;
+
+	protected final boolean isInitializer;
 
-	private final boolean isInitializer;
+	public LoxFunction(Stmt.Function declaration, Cell[] upvalues, boolean isInitializer) {
+		this(declaration, upvalues, isInitializer, null);
+	}
 
-	public LoxFunction(Stmt.Function declaration, Environment closure, boolean isInitializer) {
+	protected LoxFunction(Stmt.Function declaration, Cell[] upvalues, boolean isInitializer, LoxInstance receiver) {
 		this.declaration = declaration;
-		this.closure = closure;
+		this.upvalues = upvalues;
 		this.isInitializer = isInitializer;
+		this.receiver = receiver;
 	}
 
+	// only needed when the method is used as a value, calls pass the receiver instead, see `invoke`
 	public LoxFunction bind(LoxInstance instance) {
-		Environment environment = new Environment(this.closure);
-		environment.define("this", instance);
-		return new LoxFunction(this.declaration, environment, isInitializer);
+		return new LoxFunction(this.declaration, this.upvalues, this.isInitializer, instance);
+	}
+
+	boolean isUnboundMethod() {
+		return this.declaration.isMethod && this.receiver == null;
 	}
 
 	@Override
@@ -26,24 +36,198 @@ public class LoxFunction implements LoxCallable {
 	}
 
 	@Override
-	public Object call(Interpreter interpreter, List<Object> arguments) {
-		Environment environment = new Environment(this.closure);
+	public Object call(Interpreter interpreter, Object[] arguments) {
+		return this.invoke(interpreter, this.withReceiver(arguments));
+	}
+
+	@Override
+	public Object call0(Interpreter interpreter) {
+		if (this.runsCompiled()) {
+			return this.declaration.compiled.call(interpreter, this.upvalues, this.withReceiver());
+		}
+
+		int frame = interpreter.nextFrame();
+		this.pushReceiver(interpreter);
+
+		return interpreter.box(this.execute(interpreter, frame));
+	}
+
+	@Override
+	public Object call1(Interpreter interpreter, Object first) {
+		if (this.runsCompiled()) {
+			return this.declaration.compiled.call(interpreter, this.upvalues, this.withReceiver(first));
+		}
+
+		int frame = interpreter.nextFrame();
+		this.pushReceiver(interpreter);
+		interpreter.push(first);
+
+		return interpreter.box(this.execute(interpreter, frame));
+	}
+
+	@Override
+	public Object call2(Interpreter interpreter, Object first, Object second) {
+		if (this.runsCompiled()) {
+			return this.declaration.compiled.call(interpreter, this.upvalues, this.withReceiver(first, second));
+		}
+
+		int frame = interpreter.nextFrame();
+		this.pushReceiver(interpreter);
+		interpreter.push(first);
+		interpreter.push(second);
+
+		return interpreter.box(this.execute(interpreter, frame));
+	}
+
+	@Override
+	public Object call3(Interpreter interpreter, Object first, Object second, Object third) {
+		if (this.runsCompiled()) {
+			return this.declaration.compiled.call(interpreter, this.upvalues, this.withReceiver(first, second, third));
+		}
+
+		int frame = interpreter.nextFrame();
+		this.pushReceiver(interpreter);
+		interpreter.push(first);
+		interpreter.push(second);
+		interpreter.push(third);
+
+		return interpreter.box(this.execute(interpreter, frame));
+	}
+
+	// `arguments` starts with the receiver when this is a method, which lets callers invoke one without binding it
+	Object invoke(Interpreter interpreter, Object[] arguments) {
+		if (this.runsCompiled()) {
+			return this.declaration.compiled.call(interpreter, this.upvalues, arguments);
+		}
+
+		int frame = interpreter.nextFrame();
+
+		for (Object argument : arguments) {
+			interpreter.push(argument);
+		}
+
+		return interpreter.box(this.execute(interpreter, frame));
+	}
+
+	// runs this initializer on a new `instance`, pushed ahead of the arguments like a receiver, so a class neither binds
+	// it nor builds an array of it and the arguments. only compiled code still gets them in one, from `call`
+	void initialize0(Interpreter interpreter, LoxInstance instance) {
+		int frame = interpreter.nextFrame();
+		interpreter.push(instance);
+		this.call(interpreter, frame);
+	}
+
+	void initialize1(Interpreter interpreter, LoxInstance instance, Object first) {
+		int frame = interpreter.nextFrame();
+		interpreter.push(instance);
+		interpreter.push(first);
+		this.call(interpreter, frame);
+	}
+
+	void initialize2(Interpreter interpreter, LoxInstance instance, Object first, Object second) {
+		int frame = interpreter.nextFrame();
+		interpreter.push(instance);
+		interpreter.push(first);
+		interpreter.push(second);
+		this.call(interpreter, frame);
+	}
+
+	void initialize3(Interpreter interpreter, LoxInstance instance, Object first, Object second, Object third) {
+		int frame = interpreter.nextFrame();
+		interpreter.push(instance);
+		interpreter.push(first);
+		interpreter.push(second);
+		interpreter.push(third);
+		this.call(interpreter, frame);
+	}
+
+	void initialize(Interpreter interpreter, LoxInstance instance, Object[] arguments) {
+		int frame = interpreter.nextFrame();
+		interpreter.push(instance);
+
+		for (Object argument : arguments) {
+			interpreter.push(argument);
+		}
+
+		this.call(interpreter, frame);
+	}
+
+	private void pushReceiver(Interpreter interpreter) {
+		if (this.declaration.isMethod) {
+			interpreter.push(this.receiver);
+		}
+	}
+
+	// called with the receiver and arguments already pushed from `frame` on by the `Interpreter`, so numbers among
+	// them, and the result, can stay unboxed
+	Object call(Interpreter interpreter, int frame) {
+		if (this.runsCompiled()) {
+			return this.declaration.compiled.call(interpreter, this.upvalues, interpreter.popArguments(frame));
+		}
+
+		return this.execute(interpreter, frame);
+	}
 
-		for (int i = 0; i < this.declaration.params.size(); i += 1) {
-			environment.define(this.declaration.params.get(i).lexeme, arguments.get(i));
+	// the arguments as `invoke` and compiled code take them, with the receiver first for a method
+	private Object[] withReceiver(Object... arguments) {
+		if (!this.declaration.isMethod) {
+			return arguments;
 		}
 
-		try {
-			interpreter.executeBlock(this.declaration.body, environment);
-		} catch (Return returnValue) {
-			if (isInitializer) return this.closure.getAt(0, "this");
+		Object[] frame = new Object[arguments.length + 1];
+		frame[0] = this.receiver;
+		System.arraycopy(arguments, 0, frame, 1, arguments.length);
+		return frame;
+	}
+
+	// true when the call runs compiled code, otherwise it's counted towards compiling the function
+	private boolean runsCompiled() {
+		return this.declaration.compiled != null || this.reachedThreshold();
+	}
+
+	// compiled code takes its arguments in an array, callers that push the arguments themselves check this first
+	boolean isCompiled() {
+		return this.declaration.compiled != null;
+	}
+
+	// counts the call, true once that got the function compiled
+	private boolean reachedThreshold() {
+		if (Lox.jitThreshold >= 0 && !this.declaration.uncompilable) {
+			this.declaration.hotness += 1;
 
-			return returnValue.value;
+			if (this.declaration.hotness > Lox.jitThreshold) {
+				this.tierUp();
+				return this.declaration.compiled != null;
+			}
 		}
 
+		return false;
+	}
+
+	// the result is still unboxed when it's a number, see `Interpreter.number`
+	private Object execute(Interpreter interpreter, int frame) {
+		// "this" can't be assigned, so an initializer returns the receiver it was called with
+		Object receiver = this.isInitializer ? interpreter.valueAt(frame) : null;
+		Completion completion = interpreter.executeFunction(this.declaration, this.upvalues, frame);
+
+		if (isInitializer) return receiver;
+
+		if (completion == Completion.RETURN) return interpreter.returnValue;
+
 		return null;
 	}
 
+	// the function has been called or looped often enough to be worth compiling
+	private void tierUp() {
+		this.declaration.compiled = JitCompiler.compile(this.declaration, this.isInitializer);
+		this.declaration.uncompilable = this.declaration.compiled == null;
+
+		if (Lox.traceTiers) {
+			String tier = this.declaration.compiled != null ? "compiled" : "stays interpreted";
+			System.err.println("[tier] " + this + " " + tier + " after " + this.declaration.hotness + " calls and back-edges");
+		}
+	}
+
 	@Override
 	public String toString() {
 		return "<fun " + this.declaration.name.lexeme + ">";
@@ -1,33 +1,89 @@
 package jlox;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
+// fields live in `values`, at the slots given by the instance's `Shape`
 public class LoxInstance {
-	private LoxClass loxClass;
-	private final Map<String, Object> fields = new HashMap<>();
+	private Shape shape;
+	private Object[] values;
 
 	public LoxInstance(LoxClass loxClass) {
-		this.loxClass = loxClass;
+		this.shape = loxClass.shape;
+		this.values = new Object[loxClass.shape.capacity()];
 	}
 
-	public Object get(Token name) {
-		if (this.fields.containsKey(name.lexeme)) {
-			return this.fields.get(name.lexeme);
+	public Object get(Expr.Get site) {
+		Object value = this.property(site);
+
+		if (value instanceof LoxFunction && ((LoxFunction)value).isUnboundMethod()) {
+			return ((LoxFunction)value).bind(this);
+		}
+
+		return value;
+	}
+
+	// like `get`, but a method comes back unbound for the caller to invoke with this instance as the receiver
+	public Object property(Expr.Get site) {
+		PropertyCache.Entry entry = site.cache.find(site, this.shape);
+
+		if (entry == null) {
+			return this.property(site.name);
+		}
+
+		if (entry.slot >= 0) {
+			return this.values[entry.slot];
+		}
+
+		if (entry.method != null) return entry.method;
+
+		throw new RuntimeError(site.name, "Undefined property \"" + site.name.lexeme + "\".");
+	}
+
+	private Object property(Token name) {
+		int slot = this.shape.slotOf(name.symbol);
+		if (slot >= 0) {
+			return this.values[slot];
 		}
 
-		LoxFunction method = this.loxClass.findMethod(name.lexeme);
-		if (method != null) return method.bind(this);
+		LoxFunction method = this.shape.loxClass.findMethod(name.symbol);
+		if (method != null) return method;
 
 		throw new RuntimeError(name, "Undefined property \"" + name.lexeme + "\".");
 	}
 
-	public void set(Token name, Object value) {
-		this.fields.put(name.lexeme, value);
+	public void set(Expr.Set site, Object value) {
+		PropertyCache.Entry entry = site.cache.find(site, this.shape);
+
+		if (entry == null) {
+			this.set(site.name, value);
+			return;
+		}
+
+		this.store(entry.slot, value);
+		this.shape = entry.transition;
+	}
+
+	private void set(Token name, Object value) {
+		int slot = this.shape.slotOf(name.symbol);
+
+		if (slot < 0) {
+			slot = this.shape.size();
+			this.shape = this.shape.withField(name.symbol);
+		}
+
+		this.store(slot, value);
+	}
+
+	private void store(int slot, Object value) {
+		if (slot >= this.values.length) {
+			this.values = Arrays.copyOf(this.values, Math.max(slot + 1, this.values.length * 2));
+		}
+
+		this.values[slot] = value;
 	}
 
 	@Override
 	public String toString() {
-		return this.loxClass + " instance";
+		return this.shape.loxClass + " instance";
 	}
 }
@@ -0,0 +1,81 @@
+package jlox;
+
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// a source file mapped into memory, so it's neither read into the heap nor decoded before scanning starts. lox's
+// syntax is all ASCII, the scanner reads the file a byte per char and only the lexemes it cuts out are decoded, as
+// UTF-8, which keeps other characters in strings intact. a file is always read as UTF-8, whatever the platform's
+// charset. offsets and the length are in bytes
+final class MappedSource implements CharSequence {
+	private static final int CHUNK_SIZE = 64 * 1024;
+
+	private final ByteBuffer bytes;
+	// the scanner mostly reads on from where it was, so chars come from a chunk copied out of the mapping, a read from
+	// the mapping itself costs a lot more than from an array
+	private final byte[] chunk = new byte[MappedSource.CHUNK_SIZE];
+	private int chunkStart = 0;
+	private int chunkLength = 0;
+
+	private MappedSource(ByteBuffer bytes) {
+		this.bytes = bytes;
+	}
+
+	// a mapping stays valid once the channel is closed
+	static MappedSource map(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			return new MappedSource(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	// the same file, with a chunk of its own so another thread can read it too
+	MappedSource view() {
+		return new MappedSource(this.bytes.duplicate());
+	}
+
+	@Override
+	public int length() {
+		return this.bytes.limit();
+	}
+
+	// a byte outside ASCII comes out as a char no lexeme starts with, just like the character it's part of. the
+	// scanner decodes the whole character when it reports it
+	@Override
+	public char charAt(int index) {
+		int offset = index - this.chunkStart;
+
+		if (offset < 0 || offset >= this.chunkLength) {
+			this.load(index);
+			offset = 0;
+		}
+
+		return (char)(this.chunk[offset] & 0xff);
+	}
+
+	private void load(int index) {
+		if (index < 0 || index >= this.bytes.limit()) {
+			throw new IndexOutOfBoundsException(index);
+		}
+
+		this.chunkStart = index;
+		this.chunkLength = Math.min(MappedSource.CHUNK_SIZE, this.bytes.limit() - index);
+		this.bytes.get(index, this.chunk, 0, this.chunkLength);
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		byte[] lexeme = new byte[end - start];
+		this.bytes.get(start, lexeme);
+		return new String(lexeme, StandardCharsets.UTF_8);
+	}
+
+	@Override
+	public String toString() {
+		return this.subSequence(0, this.length()).toString();
+	}
+}
@@ -0,0 +1,26 @@
+package jlox;
+
+// functions implemented in java, shared by the `Interpreter` and the `ClosureInterpreter`
+public class Natives {
+	public static final LoxCallable CLOCK = new LoxCallable() {
+		@Override
+		public int arity() {
+			return 0;
+		}
+
+		@Override
+		public Object call(Interpreter interpreter, Object[] arguments) {
+			return this.call0(interpreter);
+		}
+
+		@Override
+		public Object call0(Interpreter interpreter) {
+			return (double)System.currentTimeMillis() / 1000.0;
+		}
+
+		@Override
+		public String toString() {
+			return "<native fun>";
+		}
+	};
+}
@@ -0,0 +1,126 @@
+package jlox;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+// scans a big source on the threads of the common `ForkJoinPool`, into the same tokens, lines, symbols and errors a
+// `Scanner` would. the source is split into chunks right after newlines, so a comment can't go on past the end of one
+// and the only token that can is a string with newlines in it. every chunk is scanned as if it didn't start inside a
+// string, with lines counted from 1 and names interned in a table of its own. the chunks are then put together in
+// order: a chunk ending inside a string has it scanned again, from where it starts on to the end of the next chunk,
+// and that replaces what was scanned for the next chunk
+public class ParallelScanner {
+	// below this, a chunk isn't worth the thread
+	private static final int MIN_CHUNK_SIZE = 256 * 1024;
+	// a few chunks per thread, so a slower one doesn't hold the rest up
+	private static final int CHUNKS_PER_THREAD = 4;
+
+	private final CharSequence source;
+	private final int chunkSize;
+
+	ParallelScanner(CharSequence source) {
+		this(source, Math.max(
+				ParallelScanner.MIN_CHUNK_SIZE,
+				source.length() / (ForkJoinPool.getCommonPoolParallelism() * ParallelScanner.CHUNKS_PER_THREAD)
+		));
+	}
+
+	ParallelScanner(CharSequence source, int chunkSize) {
+		this.source = source;
+		this.chunkSize = chunkSize;
+	}
+
+	Tokens scanTokens() {
+		List<Integer> bounds = this.split();
+
+		if (bounds.size() <= 2) {
+			return new Scanner(this.source).scanTokens();
+		}
+
+		List<ForkJoinTask<Scanner>> chunks = new ArrayList<>();
+
+		for (int i = 0; i + 1 < bounds.size(); i += 1) {
+			int start = bounds.get(i);
+			int end = bounds.get(i + 1);
+			CharSequence source = this.view();
+			chunks.add(ForkJoinPool.commonPool().submit(() -> new Scanner(source, start, end, 1).scanChunk()));
+		}
+
+		// about as many tokens as the chunks found, unless one was scanned again
+		int size = 1;
+
+		for (ForkJoinTask<Scanner> chunk : chunks) {
+			size += chunk.join().tokens().size();
+		}
+
+		Tokens tokens = new Tokens(this.source, size);
+		// the line the next chunk starts on
+		int line = 1;
+		Scanner rescanned = null;
+
+		for (int i = 0; i < chunks.size(); i += 1) {
+			Scanner chunk = rescanned != null ? rescanned : chunks.get(i).join();
+			// a chunk scanned again starts on the line its string does, the others on line 1
+			int lines = rescanned != null ? 0 : line - 1;
+
+			for (Scanner.Report report : chunk.reports()) {
+				Lox.error(report.line + lines, report.message);
+			}
+
+			tokens.addAll(chunk.tokens(), lines, ParallelScanner.intern(chunk.symbols()));
+			line = chunk.line() + lines;
+			rescanned = null;
+
+			if (chunk.openString() >= 0) {
+				Scanner string = new Scanner(this.source, chunk.openString(), bounds.get(i + 2), chunk.openStringLine() + lines);
+				rescanned = string.scanChunk();
+			}
+		}
+
+		tokens.add(TokenType.EOF, this.source.length(), 0, line);
+		return tokens;
+	}
+
+	// where the chunks start, the first line starting at or after every `chunkSize` characters, and the end
+	private List<Integer> split() {
+		List<Integer> bounds = new ArrayList<>();
+		bounds.add(0);
+
+		int start = 0;
+
+		while (start + this.chunkSize < this.source.length()) {
+			int newline = start + this.chunkSize;
+
+			while (newline < this.source.length() && this.source.charAt(newline) != '\n') {
+				newline += 1;
+			}
+
+			if (newline + 1 >= this.source.length()) break;
+
+			start = newline + 1;
+			bounds.add(start);
+		}
+
+		bounds.add(this.source.length());
+		return bounds;
+	}
+
+	// a `MappedSource` reads through a chunk of its own, every thread gets a view of the file
+	private CharSequence view() {
+		return this.source instanceof MappedSource ? ((MappedSource)this.source).view() : this.source;
+	}
+
+	// the global ids of the names in a chunk's table, interned in the order the chunk found them, so they get the ids
+	// a `Scanner` would have given them
+	private static int[] intern(Symbol.Table symbols) {
+		int[] ids = new int[symbols.size()];
+
+		for (int i = 0; i < ids.length; i += 1) {
+			ids[i] = Symbol.intern(symbols.get(i).name).id;
+		}
+
+		return ids;
+	}
+}
@@ -10,10 +10,11 @@ public class Parser {
 	private static class ParseError extends RuntimeException {
 	}
 
-	private final List<Token> tokens;
+	// only the tokens the AST keeps are made into `Token`s, see `previous`
+	private final Tokens tokens;
 	private int current = 0;
 
-	public Parser(List<Token> tokens) {
+	public Parser(Tokens tokens) {
 		this.tokens = tokens;
 	}
 
@@ -35,7 +36,8 @@ public class Parser {
 		Expr expr = this.or();
 
 		if (this.match(TokenType.EQUAL)) {
-			Token equals = this.previous();
+			// a streamed token is gone once the value is parsed, so the one to report an invalid target at is made now
+			Token equals = expr instanceof Expr.Variable || expr instanceof Expr.Get ? null : this.previous();
 			Expr value = assignment();
 
 			if (expr instanceof Expr.Variable) {
@@ -46,7 +48,7 @@ public class Parser {
 				return new Expr.Set(get.object, get.name, value);
 			}
 
-			this.error(equals, "Invalid assignment target.");
+			Lox.error(equals, "Invalid assignment target.");
 		}
 
 		return expr;
@@ -90,7 +92,7 @@ public class Parser {
 	}
 
 	private Stmt classDeclaration() {
-		Token name = this.consume(TokenType.IDENTIFIER, "Expect class name.");
+		Token name = this.consumeToken(TokenType.IDENTIFIER, "Expect class name.");
 
 		Expr.Variable superclass = null;
 		if (this.match(TokenType.LESS)) {
@@ -111,7 +113,7 @@ public class Parser {
 	}
 
 	private Stmt varDeclaration() {
-		Token name = this.consume(TokenType.IDENTIFIER, "Expect variable name.");
+		Token name = this.consumeToken(TokenType.IDENTIFIER, "Expect variable name.");
 
 		Expr initializer = null;
 		if (this.match(TokenType.EQUAL)) {
@@ -242,17 +244,17 @@ public class Parser {
 	}
 
 	private Stmt.Function function(String kind) {
-		Token name = this.consume(TokenType.IDENTIFIER, "Expect " + kind + " name.");
+		Token name = this.consumeToken(TokenType.IDENTIFIER, "Expect " + kind + " name.");
 		consume(TokenType.LEFT_PAREN, "Expect \"(\" after " + kind + " name.");
 		List<Token> parameters = new ArrayList<>();
 
 		if (!this.check(TokenType.RIGHT_PAREN)) {
 			do {
 				if (parameters.size() >= 255) {
-					this.error(this.peek(), "Can't have more than 255 parameters.");
+					this.error(this.current, "Can't have more than 255 parameters.");
 				}
 
-				parameters.add(this.consume(TokenType.IDENTIFIER, "Expect parameter name."));
+				parameters.add(this.consumeToken(TokenType.IDENTIFIER, "Expect parameter name."));
 			} while (this.match(TokenType.COMMA));
 		}
 
@@ -327,14 +329,14 @@ public class Parser {
 		if (!this.check(TokenType.RIGHT_PAREN)) {
 			do {
 				if (arguments.size() >= 255) {
-					this.error(this.peek(), "Can't have more than 255 arguments.");
+					this.error(this.current, "Can't have more than 255 arguments.");
 				} else {
 					arguments.add(expression());
 				}
 			} while (this.match(TokenType.COMMA));
 		}
 
-		Token paren = this.consume(TokenType.RIGHT_PAREN, "Expect \")\" after arguments.");
+		Token paren = this.consumeToken(TokenType.RIGHT_PAREN, "Expect \")\" after arguments.");
 
 		return new Expr.Call(callee, paren, arguments);
 	}
@@ -346,7 +348,7 @@ public class Parser {
 			if (this.match(TokenType.LEFT_PAREN)) {
 				expr = this.finishCall(expr);
 			} else if (this.match(TokenType.DOT)) {
-				Token name = this.consume(TokenType.IDENTIFIER, "Expect property name after \".\".");
+				Token name = this.consumeToken(TokenType.IDENTIFIER, "Expect property name after \".\".");
 				expr = new Expr.Get(expr, name);
 			} else {
 				break;
@@ -370,13 +372,13 @@ public class Parser {
 		}
 
 		if (this.match(TokenType.NUMBER, TokenType.STRING)) {
-			return new Expr.Literal(this.previous().literal);
+			return new Expr.Literal(this.tokens.literal(this.current - 1));
 		}
 
 		if (this.match(TokenType.SUPER)) {
 			Token keyword = this.previous();
 			this.consume(TokenType.DOT, "Expect \".\" after \"super\".");
-			Token method = this.consume(TokenType.IDENTIFIER, "Expect superclass method name.");
+			Token method = this.consumeToken(TokenType.IDENTIFIER, "Expect superclass method name.");
 			return new Expr.Super(keyword, method);
 		}
 
@@ -394,7 +396,16 @@ public class Parser {
 			return new Expr.Grouping(expr);
 		}
 
-		throw this.error(this.peek(), "Expect expression");
+		throw this.error(this.current, "Expect expression");
+	}
+
+	private boolean match(TokenType type) {
+		if (this.check(type)) {
+			this.advance();
+			return true;
+		}
+
+		return false;
 	}
 
 	private boolean match(TokenType... types) {
@@ -408,44 +419,45 @@ public class Parser {
 		return false;
 	}
 
-	private Token consume(TokenType type, String message) {
+	private void consume(TokenType type, String message) {
 		if (this.check(type)) {
-			return this.advance();
+			this.advance();
 		} else {
-			throw this.error(this.peek(), message);
+			throw this.error(this.current, message);
 		}
 	}
 
+	// `consume` for a token the AST keeps
+	private Token consumeToken(TokenType type, String message) {
+		this.consume(type, message);
+		return this.previous();
+	}
+
 	private boolean check(TokenType type) {
 		if (this.isAtEnd()) {
 			return false;
 		} else {
-			return this.peek().type == type;
+			return this.tokens.type(this.current) == type;
 		}
 	}
 
-	private Token advance() {
+	private void advance() {
 		if (!this.isAtEnd()) {
 			this.current++;
 		}
-
-		return this.previous();
 	}
 
 	private boolean isAtEnd() {
-		return peek().type == TokenType.EOF;
-	}
-
-	private Token peek() {
-		return tokens.get(current);
+		return this.tokens.type(this.current) == TokenType.EOF;
 	}
 
+	// the token just consumed, made for the AST to keep
 	private Token previous() {
-		return tokens.get(current - 1);
+		return this.tokens.token(this.current - 1);
 	}
 
-	private ParseError error(Token token, String message) {
-		Lox.error(token, message);
+	private ParseError error(int index, String message) {
+		Lox.error(this.tokens.token(index), message);
 		return new ParseError();
 	}
 
@@ -453,11 +465,11 @@ public class Parser {
 		this.advance();
 
 		while (!this.isAtEnd()) {
-			if (this.previous().type == TokenType.SEMICOLON) {
+			if (this.tokens.type(this.current - 1) == TokenType.SEMICOLON) {
 				return;
 			}
 
-			switch (this.peek().type) {
+			switch (this.tokens.type(this.current)) {
 				case CLASS, FUN, VAR, FOR, IF, WHILE, PRINT, RETURN -> {
 					return;
 				}
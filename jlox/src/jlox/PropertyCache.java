@@ -0,0 +1,124 @@
+package jlox;
+
+import java.util.Arrays;
+
+// an inline cache on an `Expr.Get` or `Expr.Set`, remembering what its property meant for the instance shapes seen
+// there. it goes from uninitialized to one shape, then to up to `POLYMORPHIC_LIMIT` shapes, and past that stops caching
+abstract class PropertyCache {
+	public static final PropertyCache UNINITIALIZED = new Uninitialized();
+
+	private static final int POLYMORPHIC_LIMIT = 4;
+
+	// null when the site stopped caching, the property is then looked up on the instance
+	abstract Entry find(Expr site, Shape shape);
+
+	// what the property means on instances of `shape`
+	static final class Entry {
+		final Shape shape;
+		// the field's slot, or -1 when a `Get` finds no field
+		final int slot;
+		// for a `Get` without a field, null when the class has no such method either
+		final LoxFunction method;
+		// for a `Set`, the shape of the instance afterwards
+		final Shape transition;
+
+		private Entry(Shape shape, int slot, LoxFunction method, Shape transition) {
+			this.shape = shape;
+			this.slot = slot;
+			this.method = method;
+			this.transition = transition;
+		}
+
+		private static Entry resolve(Expr site, Shape shape) {
+			if (site instanceof Expr.Get) {
+				Symbol name = ((Expr.Get)site).name.symbol;
+				int slot = shape.slotOf(name);
+				LoxFunction method = slot < 0 ? shape.loxClass.findMethod(name) : null;
+				return new Entry(shape, slot, method, shape);
+			}
+
+			Symbol name = ((Expr.Set)site).name.symbol;
+			int slot = shape.slotOf(name);
+
+			if (slot < 0) {
+				return new Entry(shape, shape.size(), null, shape.withField(name));
+			}
+
+			return new Entry(shape, slot, null, shape);
+		}
+	}
+
+	private static void rewrite(Expr site, PropertyCache cache) {
+		if (site instanceof Expr.Get) {
+			((Expr.Get)site).cache = cache;
+		} else {
+			((Expr.Set)site).cache = cache;
+		}
+	}
+
+	private static final class Uninitialized extends PropertyCache {
+		@Override
+		Entry find(Expr site, Shape shape) {
+			Entry entry = Entry.resolve(site, shape);
+			PropertyCache.rewrite(site, new Monomorphic(entry));
+			return entry;
+		}
+	}
+
+	private static final class Monomorphic extends PropertyCache {
+		private final Entry entry;
+
+		Monomorphic(Entry entry) {
+			this.entry = entry;
+		}
+
+		@Override
+		Entry find(Expr site, Shape shape) {
+			if (shape == this.entry.shape) {
+				return this.entry;
+			}
+
+			Entry entry = Entry.resolve(site, shape);
+			PropertyCache.rewrite(site, new Polymorphic(new Entry[] {this.entry, entry}));
+			return entry;
+		}
+	}
+
+	private static final class Polymorphic extends PropertyCache {
+		private final Entry[] entries;
+
+		Polymorphic(Entry[] entries) {
+			this.entries = entries;
+		}
+
+		@Override
+		Entry find(Expr site, Shape shape) {
+			for (Entry entry : this.entries) {
+				if (entry.shape == shape) {
+					return entry;
+				}
+			}
+
+			if (this.entries.length == PropertyCache.POLYMORPHIC_LIMIT) {
+				PropertyCache.rewrite(site, Megamorphic.INSTANCE);
+				return null;
+			}
+
+			Entry entry = Entry.resolve(site, shape);
+			Entry[] entries = Arrays.copyOf(this.entries, this.entries.length + 1);
+			entries[this.entries.length] = entry;
+			PropertyCache.rewrite(site, new Polymorphic(entries));
+			return entry;
+		}
+	}
+
+	// too many shapes go through the site to be worth checking one after another
+	private static final class Megamorphic extends PropertyCache {
+		public static final PropertyCache INSTANCE = new Megamorphic();
+
+		@Override
+		Entry find(Expr site, Shape shape) {
+			return null;
+		}
+	}
+}
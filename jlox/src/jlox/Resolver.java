@@ -1,17 +1,95 @@
 package jlox;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Stack;
 
 public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
-	private final Interpreter interpreter;
-	private final Stack<Map<String, Boolean>> scopes = new Stack<>();
+	private final Stack<Scope> scopes = new Stack<>();
 	private FunctionType currentFunction = FunctionType.NONE;
+	// innermost function being resolved, loops charge their back-edges to it
+	private Stmt.Function currentDeclaration = null;
+	// top level code has a frame too, for the locals of its blocks
+	private int scriptFrameSize = 0;
+	// slots the frame of the top level code last resolved needs, see `Interpreter.interpret`
+	public int frameSize = 0;
+
+	// whether a local is captured is only known once every closure in its function has been resolved, so its
+	// declaration and the uses in its own function are told how to reach it by `layout` after the whole program is
+	private final List<Scope> allFunctions = new ArrayList<>();
+	private final List<Local> allLocals = new ArrayList<>();
+	private final List<Reference> references = new ArrayList<>();
+
+	private static class Scope {
+		public final Scope enclosing;
+		// the function this is the scope of, if it is one
+		public final Stmt.Function declaration;
+		// innermost function scope around this one, null in top level code
+		public final Scope function;
+		public final Map<Symbol, Local> locals = new HashMap<>();
+		// slots in the frame of the function this is the scope of
+		public int frameSize = 0;
+		// the locals of enclosing functions a closure over this one captures, see `resolveUpvalue`
+		public final List<Upvalue> upvalues = new ArrayList<>();
+
+		public Scope(Scope enclosing, Stmt.Function declaration) {
+			this.enclosing = enclosing;
+			this.declaration = declaration;
+			this.function = declaration != null ? this : enclosing != null ? enclosing.function : null;
+		}
+	}
+
+	// every local has a slot in the frame of the function declaring it, the ones closures capture keep a `Cell` there
+	private static class Local {
+		public final Declaration declaration;
+		public final int frameSlot;
+		// the receiver and parameters are passed in the frame and only put in a cell when a call starts
+		public boolean isParameter = false;
+		public boolean isCaptured = false;
+		public boolean defined = false;
+
+		public Local(Declaration declaration, int frameSlot) {
+			this.declaration = declaration;
+			this.frameSlot = frameSlot;
+		}
+	}
+
+	// like clox's, a closure copies the cell of `local` from a frame slot of the function it's created in, or from an
+	// upvalue of that function when the local is declared further out
+	private static class Upvalue {
+		public final Local local;
+		public final int index;
+		public final boolean isLocal;
+
+		public Upvalue(Local local, int index, boolean isLocal) {
+			this.local = local;
+			this.index = index;
+			this.isLocal = isLocal;
+		}
+	}
 
-	public Resolver(Interpreter interpreter) {
-		this.interpreter = interpreter;
+	// the statement declaring a local, told where it goes once that's known
+	@FunctionalInterface
+	private interface Declaration {
+		void resolve(Access access, int slot);
+	}
+
+	@FunctionalInterface
+	private interface Site {
+		void resolve(Access access, int slot);
+	}
+
+	// a use of a local from the function declaring it
+	private static class Reference {
+		public final Local local;
+		public final Site site;
+
+		public Reference(Local local, Site site) {
+			this.local = local;
+			this.site = site;
+		}
 	}
 
 	private enum FunctionType {
@@ -33,6 +111,11 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 		for (Stmt statement : statements) {
 			this.resolve(statement);
 		}
+
+		// only top level code is resolved outside of any scope, by then every local and its uses have been seen
+		if (this.scopes.isEmpty()) {
+			this.layout();
+		}
 	}
 
 	public void resolve(Stmt statement) {
@@ -45,12 +128,20 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
 	public void resolveFunction(Stmt.Function function, FunctionType type) {
 		FunctionType enclosingFunction = this.currentFunction;
+		Stmt.Function enclosingDeclaration = this.currentDeclaration;
 		this.currentFunction = type;
+		this.currentDeclaration = function;
 
-		this.beginScope();
+		this.beginScope(function);
+
+		// a method's receiver is the first slot of its own frame, so calls don't need a scope just for "this"
+		if (type == FunctionType.METHOD || type == FunctionType.INITIALIZER) {
+			function.isMethod = true;
+			this.defineImplicit(Symbol.THIS).isParameter = true;
+		}
 
 		for (Token param : function.params) {
-			this.declare(param);
+			this.declare(param, null).isParameter = true;
 			this.define(param);
 		}
 
@@ -58,47 +149,164 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 		this.endScope();
 
 		this.currentFunction = enclosingFunction;
+		this.currentDeclaration = enclosingDeclaration;
 	}
 
-	private void beginScope() {
-		this.scopes.push(new HashMap<String, Boolean>());
+	private void beginScope(Stmt.Function declaration) {
+		Scope enclosing = this.scopes.isEmpty() ? null : this.scopes.peek();
+		Scope scope = new Scope(enclosing, declaration);
+		this.scopes.push(scope);
+
+		if (declaration != null) {
+			this.allFunctions.add(scope);
+		}
 	}
 
 	private void endScope() {
 		this.scopes.pop();
 	}
 
-	private void declare(Token name) {
-		if (this.scopes.isEmpty()) return;
+	// `declaration` is told where the local goes once it's laid out, a global is told its slot right away
+	private Local declare(Token name, Declaration declaration) {
+		if (this.scopes.isEmpty()) {
+			if (declaration != null) {
+				declaration.resolve(Access.GLOBAL, Environment.slotOf(name.symbol));
+			}
+
+			return null;
+		}
 
-		Map<String, Boolean> scope = this.scopes.peek();
+		Scope scope = this.scopes.peek();
 
-		if (scope.containsKey(name.lexeme)) {
+		if (scope.locals.containsKey(name.symbol)) {
 			Lox.error(name, "Already a variable with this name in this scope.");
 		}
 
-		scope.put(name.lexeme, false);
+		Local local = this.addLocal(scope, declaration);
+		scope.locals.put(name.symbol, local);
+		return local;
 	}
 
 	private void define(Token name) {
 		if (this.scopes.isEmpty()) return;
 
-		this.scopes.peek().put(name.lexeme, true);
+		this.scopes.peek().locals.get(name.symbol).defined = true;
+	}
+
+	// declares and defines a variable the user can't name, like "this" and "super"
+	private Local defineImplicit(Symbol name) {
+		Scope scope = this.scopes.peek();
+		Local local = this.addLocal(scope, null);
+		local.defined = true;
+		scope.locals.put(name, local);
+		return local;
+	}
+
+	// locals take the next slot of their function's frame, so the receiver and parameters come first
+	private Local addLocal(Scope scope, Declaration declaration) {
+		Local local;
+
+		if (scope.function != null) {
+			local = new Local(declaration, scope.function.frameSize);
+			scope.function.frameSize += 1;
+		} else {
+			local = new Local(declaration, this.scriptFrameSize);
+			this.scriptFrameSize += 1;
+		}
+
+		this.allLocals.add(local);
+		return local;
 	}
 
-	private void resolveLocal(Expr expr, Token name) {
+	// `site` is told where the local `name` refers to is, or the slot of the global when there's none
+	private void resolveLocal(Token name, Site site) {
 		for (int i = this.scopes.size() - 1; i >= 0; i -= 1) {
-			if (this.scopes.get(i).containsKey(name.lexeme)) {
-				this.interpreter.resolve(expr, this.scopes.size() - 1 - i);
+			Scope declaring = this.scopes.get(i);
+			Local local = declaring.locals.get(name.symbol);
+
+			if (local != null) {
+				Scope function = this.scopes.peek().function;
+
+				if (function != declaring.function) {
+					local.isCaptured = true;
+					site.resolve(Access.UPVALUE, this.resolveUpvalue(function, declaring.function, local));
+				} else {
+					this.references.add(new Reference(local, site));
+				}
+
 				return;
 			}
 		}
+
+		site.resolve(Access.GLOBAL, Environment.slotOf(name.symbol));
+	}
+
+	// index of the upvalue of `function` holding `local`, which `declaring` declares, the functions in between all
+	// capture it too so each closure can copy the cell from the one it's created in
+	private int resolveUpvalue(Scope function, Scope declaring, Local local) {
+		for (int i = 0; i < function.upvalues.size(); i += 1) {
+			if (function.upvalues.get(i).local == local) return i;
+		}
+
+		Scope enclosing = function.enclosing != null ? function.enclosing.function : null;
+
+		if (enclosing == declaring) {
+			function.upvalues.add(new Upvalue(local, local.frameSlot, true));
+		} else {
+			function.upvalues.add(new Upvalue(local, this.resolveUpvalue(enclosing, declaring, local), false));
+		}
+
+		return function.upvalues.size() - 1;
+	}
+
+	// a captured local is reached through its cell even in the function declaring it, that's only known now
+	private void layout() {
+		for (Local local : this.allLocals) {
+			if (local.declaration != null) {
+				local.declaration.resolve(local.isCaptured ? Access.CELL : Access.FRAME, local.frameSlot);
+			}
+		}
+
+		for (Reference reference : this.references) {
+			Local local = reference.local;
+			reference.site.resolve(local.isCaptured ? Access.CELL : Access.FRAME, local.frameSlot);
+		}
+
+		for (Scope function : this.allFunctions) {
+			Stmt.Function declaration = function.declaration;
+			List<Integer> capturedParams = new ArrayList<>();
+
+			for (Local local : function.locals.values()) {
+				if (local.isParameter && local.isCaptured) {
+					capturedParams.add(local.frameSlot);
+				}
+			}
+
+			declaration.capturedParams = capturedParams.stream().mapToInt(Integer::intValue).toArray();
+			declaration.frameSize = function.frameSize;
+			declaration.upvalues = new int[function.upvalues.size()];
+			declaration.upvaluesAreLocal = new boolean[function.upvalues.size()];
+
+			for (int i = 0; i < function.upvalues.size(); i += 1) {
+				declaration.upvalues[i] = function.upvalues.get(i).index;
+				declaration.upvaluesAreLocal[i] = function.upvalues.get(i).isLocal;
+			}
+		}
+
+		this.frameSize = this.scriptFrameSize;
+		this.scriptFrameSize = 0;
+		this.allFunctions.clear();
+		this.allLocals.clear();
+		this.references.clear();
 	}
 
 	@Override
 	public Void visitAssignExpr(Expr.Assign expr) {
 		this.resolve(expr.value);
-		this.resolveLocal(expr, expr.name);
+		this.resolveLocal(expr.name, (access, slot) -> {
+			expr.access = access;
+			expr.slot = slot;
+		});
 		return null;
 	}
 
@@ -120,6 +328,14 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 		return null;
 	}
 
+	@Override
+	public Void visitConditionalExpr(Expr.Conditional expr) {
+		this.resolve(expr.condition);
+		this.resolve(expr.thenBranch);
+		this.resolve(expr.elseBranch);
+		return null;
+	}
+
 	@Override
 	public Void visitGetExpr(Expr.Get expr) {
 		this.resolve(expr.object);
@@ -132,6 +348,20 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 		return null;
 	}
 
+	// the bindings are locals of a scope of their own, in the frame of the function the expression is in
+	@Override
+	public Void visitLetExpr(Expr.Let expr) {
+		this.beginScope(null);
+
+		for (Stmt.Var binding : expr.bindings) {
+			this.resolve(binding);
+		}
+
+		this.resolve(expr.body);
+		this.endScope();
+		return null;
+	}
+
 	@Override
 	public Void visitLiteralExpr(Expr.Literal expr) {
 		return null;
@@ -159,7 +389,17 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 			Lox.error(expr.keyword, "Can't use \"super\" in a class with no superclass.");
 		}
 
-		this.resolveLocal(expr, expr.keyword);
+		this.resolveLocal(expr.keyword, (access, slot) -> {
+			expr.access = access;
+			expr.slot = slot;
+		});
+
+		// the method is looked up on the superclass, but bound to "this"
+		if (this.currentClass != ClassType.NONE) {
+			expr.receiver = new Expr.This(new Token(TokenType.THIS, "this", null, expr.keyword.line));
+			this.resolve(expr.receiver);
+		}
+
 		return null;
 	}
 
@@ -170,7 +410,10 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 			return null;
 		}
 
-		this.resolveLocal(expr, expr.keyword);
+		this.resolveLocal(expr.keyword, (access, slot) -> {
+			expr.access = access;
+			expr.slot = slot;
+		});
 		return null;
 	}
 
@@ -182,17 +425,24 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
 	@Override
 	public Void visitVariableExpr(Expr.Variable expr) {
-		if (!this.scopes.isEmpty() && !this.scopes.peek().get(expr.name.lexeme)) {
-			Lox.error(expr.name, "Can't read local variable in its own initializer.");
+		if (!this.scopes.isEmpty()) {
+			Local local = this.scopes.peek().locals.get(expr.name.symbol);
+
+			if (local != null && !local.defined) {
+				Lox.error(expr.name, "Can't read local variable in its own initializer.");
+			}
 		}
 
-		this.resolveLocal(expr, expr.name);
+		this.resolveLocal(expr.name, (access, slot) -> {
+			expr.access = access;
+			expr.slot = slot;
+		});
 		return null;
 	}
 
 	@Override
 	public Void visitBlockStmt(Stmt.Block stmt) {
-		this.beginScope();
+		this.beginScope(null);
 		this.resolve(stmt.statements);
 		this.endScope();
 		return null;
@@ -203,10 +453,13 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 		ClassType enclosingClass = this.currentClass;
 		this.currentClass = ClassType.CLASS;
 
-		this.declare(stmt.name);
+		this.declare(stmt.name, (access, slot) -> {
+			stmt.access = access;
+			stmt.slot = slot;
+		});
 		this.define(stmt.name);
 
-		if (stmt.superclass != null && stmt.name.lexeme.equals(stmt.superclass.name.lexeme)) {
+		if (stmt.superclass != null && stmt.name.symbol == stmt.superclass.name.symbol) {
 			Lox.error(stmt.superclass.name, "A class can't inherit from itself");
 		}
 
@@ -216,24 +469,20 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 		}
 
 		if (stmt.superclass != null) {
-			this.beginScope();
-			this.scopes.peek().put("super", true);
+			// only the methods use "super", so it's always a captured local of the code declaring the class
+			this.beginScope(null);
+			stmt.superSlot = this.defineImplicit(Symbol.SUPER).frameSlot;
 		}
 
-		this.beginScope();
-		this.scopes.peek().put("this", true);
-
 		for (Stmt.Function method : stmt.methods) {
 			FunctionType declaration = FunctionType.METHOD;
-			if (method.name.lexeme.equals("init")) {
+			if (method.name.symbol == Symbol.INIT) {
 				declaration = FunctionType.INITIALIZER;
 			}
 
 			this.resolveFunction(method, declaration);
 		}
 
-		this.endScope();
-
 		if (stmt.superclass != null) {
 			this.endScope();
 		}
@@ -250,7 +499,10 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
 	@Override
 	public Void visitFunctionStmt(Stmt.Function stmt) {
-		this.declare(stmt.name);
+		this.declare(stmt.name, (access, slot) -> {
+			stmt.access = access;
+			stmt.slot = slot;
+		});
 		this.define(stmt.name);
 
 		this.resolveFunction(stmt, FunctionType.FUNCTION);
@@ -294,7 +546,10 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
 	@Override
 	public Void visitVarStmt(Stmt.Var stmt) {
-		this.declare(stmt.name);
+		this.declare(stmt.name, (access, slot) -> {
+			stmt.access = access;
+			stmt.slot = slot;
+		});
 		if (stmt.initializer != null) {
 			this.resolve(stmt.initializer);
 		}
@@ -304,6 +559,7 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
 	@Override
 	public Void visitWhileStmt(Stmt.While stmt) {
+		stmt.function = this.currentDeclaration;
 		this.resolve(stmt.condition);
 		this.resolve(stmt.body);
 		return null;
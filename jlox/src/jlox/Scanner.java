@@ -1,54 +1,96 @@
 package jlox;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 public class Scanner {
-	private static final Map<String, TokenType> keywords;
-
-	static {
-		keywords = new HashMap<>();
-		keywords.put("and", TokenType.AND);
-		keywords.put("class", TokenType.CLASS);
-		keywords.put("else", TokenType.ELSE);
-		keywords.put("false", TokenType.FALSE);
-		keywords.put("for", TokenType.FOR);
-		keywords.put("fun", TokenType.FUN);
-		keywords.put("if", TokenType.IF);
-		keywords.put("nil", TokenType.NIL);
-		keywords.put("or", TokenType.OR);
-		keywords.put("print", TokenType.PRINT);
-		keywords.put("return", TokenType.RETURN);
-		keywords.put("super", TokenType.SUPER);
-		keywords.put("this", TokenType.THIS);
-		keywords.put("true", TokenType.TRUE);
-		keywords.put("var", TokenType.VAR);
-		keywords.put("while", TokenType.WHILE);
-	}
-
-	private final String source;
-	private final List<Token> tokens = new ArrayList<>();
+	// a `String`, or a `MappedSource` for files
+	private final CharSequence source;
+	private final Tokens tokens;
 	private int start = 0;
 	private int current = 0;
 	private int line = 1;
 
-	Scanner(String source) {
+	// a scanner for a chunk of the source only scans up to `end`, interns names in a table of its own and keeps its
+	// errors back, see `ParallelScanner`
+	private final int end;
+	private final Symbol.Table symbols;
+	private final List<Report> reports;
+	// where a string the chunk ends inside of starts, and its line, -1 when there's none
+	private int openString = -1;
+	private int openStringLine = 0;
+
+	// an error kept back
+	static final class Report {
+		final int line;
+		final String message;
+
+		Report(int line, String message) {
+			this.line = line;
+			this.message = message;
+		}
+	}
+
+	Scanner(CharSequence source) {
+		this.source = source;
+		this.tokens = new Tokens(source);
+		this.end = source.length();
+		this.symbols = Symbol.TABLE;
+		this.reports = null;
+	}
+
+	Scanner(CharSequence source, int start, int end, int line) {
 		this.source = source;
+		this.tokens = new Tokens(source);
+		this.current = start;
+		this.line = line;
+		this.end = end;
+		this.symbols = new Symbol.Table();
+		this.reports = new ArrayList<>();
 	}
 
-	List<Token> scanTokens() {
+	Tokens scanTokens() {
 		while (!this.isAtEnd()) {
 			// currently at begining of next lexeme
 			this.start = this.current;
 			this.scanToken();
 		}
 
-		this.tokens.add(new Token(TokenType.EOF, "", null, this.line));
+		this.tokens.add(TokenType.EOF, this.source.length(), 0, this.line);
 		return this.tokens;
 	}
 
+	// scans a chunk, which doesn't end with an EOF
+	Scanner scanChunk() {
+		while (!this.isAtEnd()) {
+			this.start = this.current;
+			this.scanToken();
+		}
+
+		return this;
+	}
+
+	// tokens scanned as they're asked for, so a big source doesn't have to be in memory as tokens all at once
+	Tokens streamTokens() {
+		this.tokens.stream(this);
+		return this.tokens;
+	}
+
+	// scans until another token is added, the EOF once the source has run out
+	void scanNext() {
+		int size = this.tokens.size();
+
+		while (this.tokens.size() == size) {
+			if (this.isAtEnd()) {
+				this.tokens.add(TokenType.EOF, this.source.length(), 0, this.line);
+				return;
+			}
+
+			this.start = this.current;
+			this.scanToken();
+		}
+	}
+
 	private void scanToken() {
 		char c = this.advance();
 
@@ -85,27 +127,88 @@ public class Scanner {
 				} else if (this.isAlpha(c)) {
 					this.identifier();
 				} else {
-					Lox.error(line, "Unexpected character: \"" + c + "\"");
+					this.unexpected(c);
 				}
 			}
 		}
 	}
 
+	// a `MappedSource` is read a byte per char, so a character outside ASCII is the lead byte of its UTF-8 sequence,
+	// the rest of which is skipped and decoded with it
+	private void unexpected(char c) {
+		if (c >= 0x80 && this.source instanceof MappedSource) {
+			while (!this.isAtEnd() && (this.peek() & 0xc0) == 0x80) {
+				this.advance();
+			}
+		}
+
+		this.error(this.line, "Unexpected character: \"" + this.source.subSequence(this.start, this.current) + "\"");
+	}
+
 	private void identifier() {
 		while (this.isAlphaNumberic(this.peek())) {
 			this.advance();
 		}
 
-		String text = this.source.substring(this.start, this.current);
-		TokenType type = Scanner.keywords.get(text);
+		TokenType type = this.identifierType();
 
-		if (type == null) {
-			type = TokenType.IDENTIFIER;
+		if (type == TokenType.IDENTIFIER) {
+			// the token keeps only the id of the interned name
+			Symbol symbol = this.symbols.intern(this.source, this.start, this.current);
+			this.tokens.add(TokenType.IDENTIFIER, this.start, this.current - this.start, this.line, symbol.id);
+			return;
 		}
 
 		this.addToken(type);
 	}
 
+	// like clox, keywords are told apart by a trie on the characters of the lexeme, written out as switches, so
+	// nothing is allocated or hashed for them
+	private TokenType identifierType() {
+		int length = this.current - this.start;
+
+		return switch (this.source.charAt(this.start)) {
+			case 'a' -> this.keyword(1, "nd", TokenType.AND);
+			case 'c' -> this.keyword(1, "lass", TokenType.CLASS);
+			case 'e' -> this.keyword(1, "lse", TokenType.ELSE);
+			case 'f' -> length < 2 ? TokenType.IDENTIFIER : switch (this.source.charAt(this.start + 1)) {
+				case 'a' -> this.keyword(2, "lse", TokenType.FALSE);
+				case 'o' -> this.keyword(2, "r", TokenType.FOR);
+				case 'u' -> this.keyword(2, "n", TokenType.FUN);
+				default -> TokenType.IDENTIFIER;
+			};
+			case 'i' -> this.keyword(1, "f", TokenType.IF);
+			case 'n' -> this.keyword(1, "il", TokenType.NIL);
+			case 'o' -> this.keyword(1, "r", TokenType.OR);
+			case 'p' -> this.keyword(1, "rint", TokenType.PRINT);
+			case 'r' -> this.keyword(1, "eturn", TokenType.RETURN);
+			case 's' -> this.keyword(1, "uper", TokenType.SUPER);
+			case 't' -> length < 2 ? TokenType.IDENTIFIER : switch (this.source.charAt(this.start + 1)) {
+				case 'h' -> this.keyword(2, "is", TokenType.THIS);
+				case 'r' -> this.keyword(2, "ue", TokenType.TRUE);
+				default -> TokenType.IDENTIFIER;
+			};
+			case 'v' -> this.keyword(1, "ar", TokenType.VAR);
+			case 'w' -> this.keyword(1, "hile", TokenType.WHILE);
+			default -> TokenType.IDENTIFIER;
+		};
+	}
+
+	// `type` when the lexeme is `rest` after its first `offset` characters
+	private TokenType keyword(int offset, String rest, TokenType type) {
+		if (this.current - this.start != offset + rest.length()) {
+			return TokenType.IDENTIFIER;
+		}
+
+		for (int i = 0; i < rest.length(); i += 1) {
+			if (this.source.charAt(this.start + offset + i) != rest.charAt(i)) {
+				return TokenType.IDENTIFIER;
+			}
+		}
+
+		return type;
+	}
+
 	private void number() {
 		while (this.isDigit(this.peek())) {
 			this.advance();
@@ -121,13 +224,13 @@ public class Scanner {
 			}
 		}
 
-		this.addToken(
-				TokenType.NUMBER,
-				Double.parseDouble(this.source.substring(this.start, this.current))
-		);
+		// parsed by `Tokens.literal` when the parser needs the value
+		this.addToken(TokenType.NUMBER);
 	}
 
 	private void string() {
+		int line = this.line;
+
 		while (this.peek() != '"' && !this.isAtEnd()) {
 			if (this.peek() == '\n') {
 				this.line += 1;
@@ -137,16 +240,21 @@ public class Scanner {
 		}
 
 		if (this.isAtEnd()) {
-			Lox.error(line, "Unterminated string.");
+			if (this.end < this.source.length()) {
+				// it goes on in the next chunk
+				this.openString = this.start;
+				this.openStringLine = line;
+			} else {
+				this.error(this.line, "Unterminated string.");
+			}
+
 			return;
 		}
 
 		// the closing "
 		this.advance();
 
-		// trim surrounding quotes
-		String value = this.source.substring(this.start + 1, this.current - 1);
-		this.addToken(TokenType.STRING, value);
+		this.addToken(TokenType.STRING);
 	}
 
 	private boolean match(char expected) {
@@ -166,7 +274,7 @@ public class Scanner {
 	}
 
 	private char peekNext() {
-		if (this.current + 1 >= this.source.length()) {
+		if (this.current + 1 >= this.end) {
 			return '\0';
 		}
 
@@ -186,7 +294,7 @@ public class Scanner {
 	}
 
 	private boolean isAtEnd() {
-		return this.current >= this.source.length();
+		return this.current >= this.end;
 	}
 
 	private char advance() {
@@ -195,12 +303,40 @@ public class Scanner {
 		return this.source.charAt(old);
 	}
 
+	// the lexeme stays in the source, see `Tokens`
 	private void addToken(TokenType type) {
-		this.addToken(type, null);
+		this.tokens.add(type, this.start, this.current - this.start, this.line);
+	}
+
+	private void error(int line, String message) {
+		if (this.reports != null) {
+			this.reports.add(new Report(line, message));
+		} else {
+			Lox.error(line, message);
+		}
+	}
+
+	Tokens tokens() {
+		return this.tokens;
+	}
+
+	int line() {
+		return this.line;
+	}
+
+	Symbol.Table symbols() {
+		return this.symbols;
+	}
+
+	List<Report> reports() {
+		return this.reports;
+	}
+
+	int openString() {
+		return this.openString;
 	}
 
-	private void addToken(TokenType type, Object literal) {
-		String text = source.substring(this.start, this.current);
-		this.tokens.add(new Token(type, text, literal, this.line));
+	int openStringLine() {
+		return this.openStringLine;
 	}
 }
@@ -0,0 +1,85 @@
+package jlox;
+
+import java.io.IOException;
+
+import java.lang.management.ManagementFactory;
+
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+// times scanning a large source, the scripts given one after another and repeated until there's `SIZE` characters,
+// and reports the throughput and what a scan allocates, e.g. `java -cp out jlox.ScannerBenchmark src/example/bench/*.lox`
+public class ScannerBenchmark {
+	// the first runs only warm the JVM up, the best of the rest is reported
+	private static final int WARMUP = 10;
+	private static final int RUNS = 20;
+	private static final int SIZE = 8 * 1024 * 1024;
+
+	private static final Map<String, Function<String, Tokens>> MODES = new LinkedHashMap<>();
+
+	// counts the bytes allocated by the running thread, for the parallel scanner that's without its chunks
+	private static final com.sun.management.ThreadMXBean THREADS =
+			(com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+
+	static {
+		ScannerBenchmark.MODES.put("scanner", source -> new Scanner(source).scanTokens());
+		ScannerBenchmark.MODES.put("streaming", ScannerBenchmark::pullAll);
+		ScannerBenchmark.MODES.put("parallel", source -> new ParallelScanner(source).scanTokens());
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0) {
+			System.err.println("Usage: scannerbenchmark <script>...");
+			System.exit(64);
+		}
+
+		StringBuilder scripts = new StringBuilder();
+
+		for (String path : args) {
+			scripts.append(new String(Files.readAllBytes(Paths.get(path)), Charset.defaultCharset())).append('\n');
+		}
+
+		String source = scripts.toString().repeat(Math.max(1, ScannerBenchmark.SIZE / scripts.length()));
+
+		for (Map.Entry<String, Function<String, Tokens>> mode : ScannerBenchmark.MODES.entrySet()) {
+			long best = Long.MAX_VALUE;
+			long bytes = 0;
+			int tokens = 0;
+
+			for (int run = 0; run < ScannerBenchmark.WARMUP + ScannerBenchmark.RUNS; run += 1) {
+				long allocated = ScannerBenchmark.THREADS.getCurrentThreadAllocatedBytes();
+				long start = System.nanoTime();
+				tokens = mode.getValue().apply(source).size();
+				long elapsed = System.nanoTime() - start;
+				allocated = ScannerBenchmark.THREADS.getCurrentThreadAllocatedBytes() - allocated;
+
+				if (run >= ScannerBenchmark.WARMUP && elapsed < best) {
+					best = elapsed;
+					bytes = allocated;
+				}
+			}
+
+			double megabytes = source.length() / (1024.0 * 1024.0);
+			System.out.println(String.format(
+					"%-12s %d tokens %6dms %8.1fMB/s %9.1fMB allocated",
+					mode.getKey(), tokens, best / 1_000_000, megabytes / (best / 1e9), bytes / (1024.0 * 1024.0)
+			));
+		}
+	}
+
+	// asks a stream for every token in order, like the parser would
+	private static Tokens pullAll(String source) {
+		Tokens tokens = new Scanner(source).streamTokens();
+
+		for (int i = 0; tokens.type(i) != TokenType.EOF; i += 1) {
+			// scanned by asking for its type
+		}
+
+		return tokens;
+	}
+}
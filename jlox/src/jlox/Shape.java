@@ -0,0 +1,56 @@
+package jlox;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// the layout of an instance's fields: which slot of `LoxInstance.values` each one is in. every class has a root shape
+// without fields, adding a field moves an instance along a transition to the next shape, so instances that got the
+// same fields in the same order share a shape
+final class Shape {
+	public final LoxClass loxClass;
+	private final Shape root;
+	private final Map<Symbol, Integer> slots;
+	private final Map<Symbol, Shape> transitions = new HashMap<>();
+	// only kept on the root, the most fields an instance of the class has had. new instances start out this big
+	private int capacity = 0;
+
+	Shape(LoxClass loxClass) {
+		this.loxClass = loxClass;
+		this.root = this;
+		this.slots = new HashMap<>();
+	}
+
+	private Shape(Shape parent, Symbol name) {
+		this.loxClass = parent.loxClass;
+		this.root = parent.root;
+		this.slots = new HashMap<>(parent.slots);
+		this.slots.put(name, parent.size());
+	}
+
+	// -1 when there's no such field
+	int slotOf(Symbol name) {
+		Integer slot = this.slots.get(name);
+		return slot != null ? slot : -1;
+	}
+
+	int size() {
+		return this.slots.size();
+	}
+
+	int capacity() {
+		return this.capacity;
+	}
+
+	// the shape after adding the field `name`, whose slot is the current `size`
+	Shape withField(Symbol name) {
+		Shape next = this.transitions.get(name);
+
+		if (next == null) {
+			next = new Shape(this, name);
+			this.transitions.put(name, next);
+			this.root.capacity = Math.max(this.root.capacity, next.size());
+		}
+
+		return next;
+	}
+}
@@ -32,6 +32,9 @@ abstract class Stmt {
 		public final Token name;
 		public final Expr.Variable superclass;
 		public final List<Stmt.Function> methods;
+		public Access access = Access.GLOBAL;
+		public int slot = -1;
+		public int superSlot = -1;
 
 		Class(Token name, Expr.Variable superclass, List<Stmt.Function> methods) {
 			this.name = name;
@@ -62,6 +65,16 @@ abstract class Stmt {
 		public final Token name;
 		public final List<Token> params;
 		public final List<Stmt> body;
+		public Access access = Access.GLOBAL;
+		public int slot = -1;
+		public boolean isMethod = false;
+		public int[] capturedParams = null;
+		public int[] upvalues = null;
+		public boolean[] upvaluesAreLocal = null;
+		public int frameSize = 0;
+		public int hotness = 0;
+		public CompiledFunction compiled = null;
+		public boolean uncompilable = false;
 
 		Function(Token name, List<Token> params, List<Stmt> body) {
 			this.name = name;
@@ -123,6 +136,8 @@ abstract class Stmt {
 	static class Var extends Stmt {
 		public final Token name;
 		public final Expr initializer;
+		public Access access = Access.GLOBAL;
+		public int slot = -1;
 
 		Var(Token name, Expr initializer) {
 			this.name = name;
@@ -138,6 +153,10 @@ abstract class Stmt {
 	static class While extends Stmt {
 		public final Expr condition;
 		public final Stmt body;
+		public Stmt.Function function = null;
+		public int hotness = 0;
+		public CompiledFunction compiled = null;
+		public boolean uncompilable = false;
 
 		While(Expr condition, Stmt body) {
 			this.condition = condition;
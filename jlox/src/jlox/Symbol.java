@@ -0,0 +1,126 @@
+package jlox;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// an interned name. the scanner makes every identifier into the one `Symbol` for its name, so the resolver and the
+// runtime compare names by identity and hash them by a hash computed once. ids are dense, in the order names are first
+// seen, and like global slots they're the same for every program run in this process
+public final class Symbol {
+	private static final int INITIAL_CAPACITY = 256;
+
+	// the table every symbol outside of a `ParallelScanner` comes from
+	static final Table TABLE = new Table();
+
+	public static final Symbol THIS = Symbol.intern("this");
+	public static final Symbol SUPER = Symbol.intern("super");
+	public static final Symbol INIT = Symbol.intern("init");
+
+	public final String name;
+	public final int id;
+	// the same as the name's `String.hashCode`
+	private final int hash;
+	// handed out by `Environment.slotOf`, -1 until the name is used as a global
+	int globalSlot = -1;
+
+	private Symbol(String name, int id, int hash) {
+		this.name = name;
+		this.id = id;
+		this.hash = hash;
+	}
+
+	public static Symbol intern(String name) {
+		return Symbol.TABLE.intern(name, 0, name.length());
+	}
+
+	// the symbol for the name at `start` up to `end` in `source`, only a new name is copied out of it
+	public static Symbol intern(CharSequence source, int start, int end) {
+		return Symbol.TABLE.intern(source, start, end);
+	}
+
+	public static Symbol get(int id) {
+		return Symbol.TABLE.get(id);
+	}
+
+	private boolean is(CharSequence source, int start, int length) {
+		if (this.name.length() != length) return false;
+
+		for (int i = 0; i < length; i += 1) {
+			if (this.name.charAt(i) != source.charAt(start + i)) return false;
+		}
+
+		return true;
+	}
+
+	// `equals` is identity, there's only one symbol per name
+	@Override
+	public int hashCode() {
+		return this.hash;
+	}
+
+	@Override
+	public String toString() {
+		return this.name;
+	}
+
+	// names interned so far, with open addressing, kept at most half full. a `ParallelScanner` gives each thread a
+	// table of its own and interns the names they found in `TABLE` once they're done
+	static final class Table {
+		private Symbol[] table = new Symbol[Symbol.INITIAL_CAPACITY];
+		private final List<Symbol> symbols = new ArrayList<>();
+
+		Symbol intern(CharSequence source, int start, int end) {
+			int hash = 0;
+			for (int i = start; i < end; i += 1) {
+				hash = 31 * hash + source.charAt(i);
+			}
+
+			int length = end - start;
+			int mask = this.table.length - 1;
+			int index = (hash ^ (hash >>> 16)) & mask;
+
+			for (Symbol symbol = this.table[index]; symbol != null; symbol = this.table[index]) {
+				if (symbol.hash == hash && symbol.is(source, start, length)) {
+					return symbol;
+				}
+
+				index = (index + 1) & mask;
+			}
+
+			Symbol symbol = new Symbol(source.subSequence(start, end).toString(), this.symbols.size(), hash);
+			this.symbols.add(symbol);
+			this.table[index] = symbol;
+
+			if (this.symbols.size() * 2 > this.table.length) {
+				this.rehash();
+			}
+
+			return symbol;
+		}
+
+		Symbol get(int id) {
+			return this.symbols.get(id);
+		}
+
+		int size() {
+			return this.symbols.size();
+		}
+
+		private void rehash() {
+			Symbol[] table = new Symbol[this.table.length * 2];
+			int mask = table.length - 1;
+
+			for (Symbol symbol : this.symbols) {
+				int index = (symbol.hash ^ (symbol.hash >>> 16)) & mask;
+
+				while (table[index] != null) {
+					index = (index + 1) & mask;
+				}
+
+				table[index] = symbol;
+			}
+
+			this.table = table;
+		}
+	}
+}
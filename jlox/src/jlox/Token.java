@@ -5,12 +5,23 @@ public class Token {
 	public final String lexeme;
 	public final Object literal;
 	public final int line;
+	// the interned name of an identifier, `this` or `super`, null for every other token
+	public final Symbol symbol;
 
 	Token(TokenType type, String lexeme, Object literal, int line) {
+		this(type, lexeme, literal, line, Token.isName(type) ? Symbol.intern(lexeme) : null);
+	}
+
+	Token(TokenType type, String lexeme, Object literal, int line, Symbol symbol) {
 		this.type = type;
 		this.lexeme = lexeme;
 		this.literal = literal;
 		this.line = line;
+		this.symbol = symbol;
+	}
+
+	static boolean isName(TokenType type) {
+		return type == TokenType.IDENTIFIER || type == TokenType.THIS || type == TokenType.SUPER;
 	}
 
 	public String toString() {
@@ -0,0 +1,189 @@
+package jlox;
+
+import java.util.Arrays;
+
+// the tokens of a source, packed in parallel arrays instead of a `Token` each: the type, where the lexeme starts in
+// the source, how long it is and the line. lexemes and literals are only cut out of the source when asked for, the
+// `Parser` does that for the tokens the AST keeps, e.g. names and operators, and for errors. an identifier's lexeme is
+// the name of the `Symbol` the scanner interned it as
+//
+// tokens are either all scanned up front, or streamed: scanned as they're asked for. a streamed `Tokens` is a window,
+// it only keeps the tokens from the one before the furthest asked for, the one the parser just consumed, and those
+// scanned ahead to fill its arrays, so memory stays the same however long the source is
+public class Tokens {
+	private static final TokenType[] TYPES = TokenType.values();
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private final CharSequence source;
+	private int[] types;
+	private int[] starts;
+	private int[] lengths;
+	private int[] lines;
+	// the id of an identifier's symbol, unused for every other token
+	private int[] symbols;
+	private int count = 0;
+
+	// only set when streaming: the scanner to pull more tokens from, the index of the first token still in the arrays,
+	// and the furthest one asked for
+	private Scanner scanner = null;
+	private int base = 0;
+	private int furthest = 0;
+	private boolean scannedEof = false;
+
+	Tokens(CharSequence source) {
+		this(source, Tokens.INITIAL_CAPACITY);
+	}
+
+	Tokens(CharSequence source, int capacity) {
+		this.source = source;
+		this.types = new int[capacity];
+		this.starts = new int[capacity];
+		this.lengths = new int[capacity];
+		this.lines = new int[capacity];
+		this.symbols = new int[capacity];
+	}
+
+	void stream(Scanner scanner) {
+		this.scanner = scanner;
+	}
+
+	void add(TokenType type, int start, int length, int line) {
+		this.add(type, start, length, line, -1);
+	}
+
+	void add(TokenType type, int start, int length, int line, int symbol) {
+		if (this.count == this.types.length) {
+			this.makeRoom();
+		}
+
+		this.types[this.count] = type.ordinal();
+		this.starts[this.count] = start;
+		this.lengths[this.count] = length;
+		this.lines[this.count] = line;
+		this.symbols[this.count] = symbol;
+		this.count += 1;
+		this.scannedEof |= type == TokenType.EOF;
+	}
+
+	// a stream drops the tokens nothing can ask for any more, the arrays only grow when that frees nothing
+	private void makeRoom() {
+		int dropped = this.scanner != null ? Math.min(this.furthest - 1 - this.base, this.count) : 0;
+
+		if (dropped > 0) {
+			this.count -= dropped;
+			System.arraycopy(this.types, dropped, this.types, 0, this.count);
+			System.arraycopy(this.starts, dropped, this.starts, 0, this.count);
+			System.arraycopy(this.lengths, dropped, this.lengths, 0, this.count);
+			System.arraycopy(this.lines, dropped, this.lines, 0, this.count);
+			System.arraycopy(this.symbols, dropped, this.symbols, 0, this.count);
+			this.base += dropped;
+			return;
+		}
+
+		this.grow(this.count * 2);
+	}
+
+	private void grow(int capacity) {
+		this.types = Arrays.copyOf(this.types, capacity);
+		this.starts = Arrays.copyOf(this.starts, capacity);
+		this.lengths = Arrays.copyOf(this.lengths, capacity);
+		this.lines = Arrays.copyOf(this.lines, capacity);
+		this.symbols = Arrays.copyOf(this.symbols, capacity);
+	}
+
+	// appends the tokens of a chunk a `ParallelScanner` scanned, its lines counted from `lines` on and its symbols
+	// from its own table turned into the ids in `symbols`
+	void addAll(Tokens chunk, int lines, int[] symbols) {
+		if (this.count + chunk.count > this.types.length) {
+			this.grow(Math.max(this.count + chunk.count, this.types.length * 2));
+		}
+
+		System.arraycopy(chunk.types, 0, this.types, this.count, chunk.count);
+		System.arraycopy(chunk.starts, 0, this.starts, this.count, chunk.count);
+		System.arraycopy(chunk.lengths, 0, this.lengths, this.count, chunk.count);
+
+		for (int i = 0; i < chunk.count; i += 1) {
+			this.lines[this.count + i] = chunk.lines[i] + lines;
+			this.symbols[this.count + i] = chunk.symbols[i] >= 0 ? symbols[chunk.symbols[i]] : -1;
+		}
+
+		this.count += chunk.count;
+	}
+
+	// where token `index` is in the arrays, a stream scans up to it first
+	private int at(int index) {
+		if (this.scanner != null) {
+			this.furthest = Math.max(this.furthest, index);
+
+			if (index >= this.base + this.count) {
+				this.pull(index);
+			}
+		}
+
+		return index - this.base;
+	}
+
+	// scans on until the arrays are full, rather than a token at a time, so the parser only calls back into the
+	// scanner once for a window of tokens
+	private void pull(int index) {
+		while (index >= this.base + this.count || this.count < this.types.length && !this.scannedEof) {
+			this.scanner.scanNext();
+		}
+	}
+
+	// how many tokens have been scanned, while streaming that's so far
+	public int size() {
+		return this.base + this.count;
+	}
+
+	public TokenType type(int index) {
+		return Tokens.TYPES[this.types[this.at(index)]];
+	}
+
+	public int line(int index) {
+		return this.lines[this.at(index)];
+	}
+
+	public String lexeme(int index) {
+		int at = this.at(index);
+
+		if (this.types[at] == TokenType.IDENTIFIER.ordinal()) {
+			return Symbol.get(this.symbols[at]).name;
+		}
+
+		return this.source.subSequence(this.starts[at], this.starts[at] + this.lengths[at]).toString();
+	}
+
+	// the value of a number or string, null for every other token
+	public Object literal(int index) {
+		int at = this.at(index);
+
+		switch (this.type(index)) {
+			case NUMBER:
+				return Double.parseDouble(this.lexeme(index));
+			case STRING:
+				// without the quotes
+				return this.source.subSequence(this.starts[at] + 1, this.starts[at] + this.lengths[at] - 1).toString();
+			default:
+				return null;
+		}
+	}
+
+	// the interned name of an identifier, `this` or `super`, null for every other token
+	public Symbol symbol(int index) {
+		switch (this.type(index)) {
+			case IDENTIFIER:
+				return Symbol.get(this.symbols[this.at(index)]);
+			case THIS:
+				return Symbol.THIS;
+			case SUPER:
+				return Symbol.SUPER;
+			default:
+				return null;
+		}
+	}
+
+	public Token token(int index) {
+		return new Token(this.type(index), this.lexeme(index), this.literal(index), this.line(index), this.symbol(index));
+	}
+}
@@ -0,0 +1,99 @@
+package jlox;
+
+// how an `Expr.Unary` is evaluated once its operand is, rewritten per site like a `BinaryNode`
+abstract class UnaryNode {
+	public static final UnaryNode UNINITIALIZED = new Uninitialized();
+
+	abstract Object execute(Expr.Unary site, Object right);
+
+	// the operand evaluated to an unboxed number, a result that's a number is returned through `interpreter.number`
+	Object executeNumber(Interpreter interpreter, Expr.Unary site, double right) {
+		return interpreter.unbox(this.execute(site, right));
+	}
+
+	private static final class Uninitialized extends UnaryNode {
+		@Override
+		Object execute(Expr.Unary site, Object right) {
+			if (site.operator.type == TokenType.BANG) {
+				site.node = right instanceof Boolean ? BooleanNot.INSTANCE : Not.INSTANCE;
+			} else {
+				site.node = right instanceof Double ? NumberNegate.INSTANCE : Negate.INSTANCE;
+			}
+
+			return site.node.execute(site, right);
+		}
+
+		@Override
+		Object executeNumber(Interpreter interpreter, Expr.Unary site, double right) {
+			site.node = site.operator.type == TokenType.BANG ? Not.INSTANCE : NumberNegate.INSTANCE;
+			return site.node.executeNumber(interpreter, site, right);
+		}
+	}
+
+	private static final class BooleanNot extends UnaryNode {
+		public static final UnaryNode INSTANCE = new BooleanNot();
+
+		@Override
+		Object execute(Expr.Unary site, Object right) {
+			if (right instanceof Boolean) {
+				return !(boolean)right;
+			}
+
+			site.node = Not.INSTANCE;
+			return Not.INSTANCE.execute(site, right);
+		}
+	}
+
+	private static final class Not extends UnaryNode {
+		public static final UnaryNode INSTANCE = new Not();
+
+		@Override
+		Object execute(Expr.Unary site, Object right) {
+			return !Interpreter.isTruthy(right);
+		}
+
+		// numbers are always truthy
+		@Override
+		Object executeNumber(Interpreter interpreter, Expr.Unary site, double right) {
+			return false;
+		}
+	}
+
+	private static final class NumberNegate extends UnaryNode {
+		public static final UnaryNode INSTANCE = new NumberNegate();
+
+		@Override
+		Object execute(Expr.Unary site, Object right) {
+			if (right instanceof Double) {
+				return -(double)right;
+			}
+
+			site.node = Negate.INSTANCE;
+			return Negate.INSTANCE.execute(site, right);
+		}
+
+		@Override
+		Object executeNumber(Interpreter interpreter, Expr.Unary site, double right) {
+			return interpreter.number(-right);
+		}
+	}
+
+	// the operand has been something other than a number, which is an error unless it changes back
+	private static final class Negate extends UnaryNode {
+		public static final UnaryNode INSTANCE = new Negate();
+
+		@Override
+		Object execute(Expr.Unary site, Object right) {
+			if (right instanceof Double) {
+				return -(double)right;
+			}
+
+			throw new RuntimeError(site.operator, "Operand must be a number.");
+		}
+
+		@Override
+		Object executeNumber(Interpreter interpreter, Expr.Unary site, double right) {
+			return interpreter.number(-right);
+		}
+	}
+}
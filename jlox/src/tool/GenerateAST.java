@@ -17,31 +17,34 @@ public class GenerateAST {
 
 		String outputDir = args[0];
 
+		// fields after the "|" are mutable and filled in after parsing, e.g. by the `Resolver`, or rewritten while running
 		defineAST(outputDir, "Expr", Arrays.asList(
-				"Assign   : Token name, Expr value",
-				"Binary   : Expr left, Token operator, Expr right",
-				"Call     : Expr callee, Token paren, List<Expr> arguments",
-				"Get      : Expr object, Token name",
-				"Grouping : Expr expression",
-				"Literal  : Object value",
-				"Logical  : Expr left, Token operator, Expr right",
-				"Set      : Expr object, Token name, Expr value",
-				"Super    : Token keyword, Token method",
-				"This     : Token keyword",
-				"Unary    : Token operator, Expr right",
-				"Variable : Token name"
+				"Assign      : Token name, Expr value | Access access = Access.GLOBAL, int slot = -1",
+				"Binary      : Expr left, Token operator, Expr right | BinaryNode node = BinaryNode.UNINITIALIZED",
+				"Call        : Expr callee, Token paren, List<Expr> arguments",
+				"Conditional : Expr condition, Expr thenBranch, Expr elseBranch",
+				"Get         : Expr object, Token name | PropertyCache cache = PropertyCache.UNINITIALIZED",
+				"Grouping    : Expr expression",
+				"Let         : List<Stmt.Var> bindings, Expr body",
+				"Literal     : Object value",
+				"Logical     : Expr left, Token operator, Expr right | LogicalNode node = LogicalNode.UNINITIALIZED",
+				"Set         : Expr object, Token name, Expr value | PropertyCache cache = PropertyCache.UNINITIALIZED",
+				"Super       : Token keyword, Token method | Access access = Access.GLOBAL, int slot = -1, Expr.This receiver = null",
+				"This        : Token keyword | Access access = Access.GLOBAL, int slot = -1",
+				"Unary       : Token operator, Expr right | UnaryNode node = UnaryNode.UNINITIALIZED",
+				"Variable    : Token name | Access access = Access.GLOBAL, int slot = -1"
 		));
 
 		defineAST(outputDir, "Stmt", Arrays.asList(
 				"Block      : List<Stmt> statements",
-				"Class      : Token name, Expr.Variable superclass, List<Stmt.Function> methods",
+				"Class      : Token name, Expr.Variable superclass, List<Stmt.Function> methods | Access access = Access.GLOBAL, int slot = -1, int superSlot = -1",
 				"Expression : Expr expression",
-				"Function   : Token name, List<Token> params, List<Stmt> body",
+				"Function   : Token name, List<Token> params, List<Stmt> body | Access access = Access.GLOBAL, int slot = -1, boolean isMethod = false, int[] capturedParams = null, int[] upvalues = null, boolean[] upvaluesAreLocal = null, int frameSize = 0, int hotness = 0, CompiledFunction compiled = null, boolean uncompilable = false",
 				"If         : Expr condition, Stmt thenBranch, Stmt elseBranch",
 				"Print      : Expr expression",
 				"Return     : Token keyword, Expr value",
-				"Var        : Token name, Expr initializer",
-				"While      : Expr condition, Stmt body"
+				"Var        : Token name, Expr initializer | Access access = Access.GLOBAL, int slot = -1",
+				"While      : Expr condition, Stmt body | Stmt.Function function = null, int hotness = 0, CompiledFunction compiled = null, boolean uncompilable = false"
 		));
 	}
 
@@ -61,8 +64,9 @@ public class GenerateAST {
 
 		for (String type : types) {
 			String className = type.split(":")[0].trim();
-			String fields = type.split(":")[1].trim();
-			defineType(writer, baseName, className, fields);
+			String[] fields = type.split(":")[1].split("\\|");
+			String mutableFields = fields.length > 1 ? fields[1].trim() : null;
+			defineType(writer, baseName, className, fields[0].trim(), mutableFields);
 			writer.println();
 		}
 
@@ -82,7 +86,13 @@ public class GenerateAST {
 	}
 
 
-	private static void defineType(PrintWriter writer, String baseName, String className, String fieldList) {
+	private static void defineType(
+			PrintWriter writer,
+			String baseName,
+			String className,
+			String fieldList,
+			String mutableFieldList
+	) {
 		String[] fields = fieldList.split(", ");
 
 		writer.println("\tstatic class " + className + " extends " + baseName + " {");
@@ -91,6 +101,12 @@ public class GenerateAST {
 		for (String field : fields) {
 			writer.println("\t\tpublic final " + field + ";");
 		}
+
+		if (mutableFieldList != null) {
+			for (String field : mutableFieldList.split(", ")) {
+				writer.println("\t\tpublic " + field + ";");
+			}
+		}
 		writer.println();
 
 		// constructor